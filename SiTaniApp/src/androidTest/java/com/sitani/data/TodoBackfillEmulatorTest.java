@@ -0,0 +1,115 @@
+package com.sitani.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.sitani.models.TodoItem;
+import com.sitani.utils.FirebaseEmulator;
+import com.sitani.utils.FirebaseHelper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads a backfill page, lets a newer change reach the local store, and only then stores the
+ * page, which is the order a slow page and a live change can land in. Needs the emulators from
+ * firebase.json running.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TodoBackfillEmulatorTest {
+    private static final String TODO_ID = "todo-1";
+
+    private TodoRepository repository;
+    private String userId;
+    private List<DocumentSnapshot> stalePage;
+
+    @Before
+    public void setUp() throws Exception {
+        FirebaseEmulator.connect();
+        FirebaseEmulator.clear();
+        userId = FirebaseEmulator.createUser("backfill@sitani.test");
+        repository = TodoRepository.getInstance(InstrumentationRegistry.getInstrumentation().getTargetContext());
+
+        TodoItem todoItem = new TodoItem(TODO_ID, "Before", "Seeded todo", userId);
+        FirebaseEmulator.<Void>await(listener -> FirebaseHelper.commitTodoBatch(userId,
+                Collections.singletonMap(TODO_ID, todoItem), Collections.emptyMap(), listener));
+        FirebaseEmulator.<Void>await(listener -> repository.ensureSyncWatermark(userId, listener));
+
+        QuerySnapshot page = FirebaseEmulator.await(listener -> FirebaseHelper.getUserTodosPage(
+                userId, 0L, null, TodoPagingSource.PAGE_SIZE, Runnable::run, listener));
+        stalePage = page.getDocuments();
+    }
+
+    @Test
+    public void pageDoesNotOverwriteNewerListenerChange() throws Exception {
+        updateRemotely(Collections.singletonMap("title", "After"));
+        TodoRepository.TodoChanges synced = FirebaseEmulator.await(listener -> repository.syncTodos(userId, listener));
+        assertEquals(1, synced.upserted.size());
+
+        TodoRepository.TodoChanges stored = storeStalePage();
+
+        assertTrue(stored.isEmpty());
+        assertEquals("After", storedTodo().getTitle());
+    }
+
+    @Test
+    public void pageDoesNotBringBackTodoDeletedSinceItWasRead() throws Exception {
+        Map<String, Object> tombstone = new HashMap<>();
+        tombstone.put("deleted", true);
+        tombstone.put("completed", true);
+        updateRemotely(tombstone);
+        FirebaseEmulator.<TodoRepository.TodoChanges>await(listener -> repository.syncTodos(userId, listener));
+
+        TodoRepository.TodoChanges stored = storeStalePage();
+
+        assertTrue(stored.isEmpty());
+        assertTrue(localTodos().isEmpty());
+    }
+
+    @Test
+    public void pageDoesNotOverwriteNewerLocalEdit() throws Exception {
+        TodoItem seeded = FirebaseHelper.toTodoItem(stalePage.get(0));
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() ->
+                repository.updateTodoDetails(seeded, "Edited", "Changed on device", task -> {
+                }));
+
+        TodoRepository.TodoChanges stored = storeStalePage();
+
+        assertTrue(stored.isEmpty());
+        assertEquals("Edited", storedTodo().getTitle());
+    }
+
+    private void updateRemotely(Map<String, Object> fields) throws Exception {
+        FirebaseEmulator.<Void>await(listener -> FirebaseHelper.commitTodoBatch(userId,
+                Collections.emptyMap(), Collections.singletonMap(TODO_ID, fields), listener));
+    }
+
+    // Runs on the store executor, after every local write queued before it
+    private TodoRepository.TodoChanges storeStalePage() throws Exception {
+        return Tasks.await(repository.runInBackground(() -> repository.storeBackfillPage(userId, stalePage)),
+                FirebaseEmulator.TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private List<TodoItem> localTodos() throws Exception {
+        return FirebaseEmulator.await(listener -> repository.getTodos(userId, listener));
+    }
+
+    private TodoItem storedTodo() throws Exception {
+        List<TodoItem> todos = localTodos();
+        assertEquals(1, todos.size());
+        return todos.get(0);
+    }
+}
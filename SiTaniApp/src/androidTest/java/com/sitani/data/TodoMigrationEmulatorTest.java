@@ -0,0 +1,180 @@
+package com.sitani.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.AggregateSource;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.sitani.models.TodoItem;
+import com.sitani.utils.Constants;
+import com.sitani.utils.FirebaseEmulator;
+import com.sitani.utils.FirebaseHelper;
+import com.sitani.utils.TodoItemCodec;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs TodoMigration against the Firestore emulator with todos seeded into the old top-level
+ * collection. Needs the emulators from firebase.json running.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TodoMigrationEmulatorTest {
+    private static final int SEED_BATCH_SIZE = 200;
+
+    private SharedPreferences prefs;
+    private TodoMigration migration;
+    private String userId;
+
+    @Before
+    public void setUp() throws Exception {
+        FirebaseEmulator.connect();
+        FirebaseEmulator.clear();
+        userId = FirebaseEmulator.createUser("migration@sitani.test");
+        prefs = InstrumentationRegistry.getInstrumentation().getTargetContext()
+                .getSharedPreferences("todo_migration_test", Context.MODE_PRIVATE);
+        prefs.edit().clear().commit();
+        migration = new TodoMigration(prefs);
+    }
+
+    @Test
+    public void movesEveryTodoAndDeletesTheOriginals() throws Exception {
+        // Two full batches and a short one
+        int count = TodoMigration.BATCH_SIZE * 2 + 50;
+        seedLegacyTodos(0, count);
+
+        migrate();
+
+        assertTrue(migration.isComplete(userId));
+        assertEquals(0, legacyTodos().size());
+        assertEquals(count, countUserTodos());
+        TodoItem moved = FirebaseHelper.toTodoItem(Tasks.await(FirebaseHelper.getFirestore()
+                .collection(Constants.USERS_COLLECTION).document(userId)
+                .collection(Constants.TODOS_COLLECTION).document(legacyId(7)).get(),
+                FirebaseEmulator.TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals("Legacy task 7", moved.getTitle());
+        assertEquals(userId, moved.getUserId());
+        assertEquals(createdAt(7), moved.getCreatedAt());
+    }
+
+    @Test
+    public void resumesAfterAnInterruptedRun() throws Exception {
+        int count = TodoMigration.BATCH_SIZE + 100;
+        seedLegacyTodos(0, count);
+        // What a run killed after its first batch leaves behind
+        List<DocumentSnapshot> firstBatch = legacyTodos().subList(0, TodoMigration.BATCH_SIZE);
+        Tasks.await(FirebaseHelper.moveLegacyTodos(userId, firstBatch),
+                FirebaseEmulator.TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertFalse(migration.isComplete(userId));
+
+        migrate();
+
+        assertTrue(migration.isComplete(userId));
+        assertEquals(0, legacyTodos().size());
+        assertEquals(count, countUserTodos());
+    }
+
+    @Test
+    public void finishedMigrationDoesNotQueryAgain() throws Exception {
+        migrate();
+        assertTrue(migration.isComplete(userId));
+        seedLegacyTodos(0, 1);
+
+        migrate();
+
+        assertEquals(1, legacyTodos().size());
+        assertEquals(0, countUserTodos());
+    }
+
+    @Test
+    public void oldBuildsCanStillWriteTheirOwnLegacyTodos() throws Exception {
+        CollectionReference legacy = FirebaseHelper.getFirestore().collection(Constants.TODOS_COLLECTION);
+        TodoItem own = new TodoItem("old-build", "From an old build", "Not yet updated", userId);
+        Tasks.await(legacy.document(own.getId()).set(TodoItemCodec.toMap(own)),
+                FirebaseEmulator.TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        Tasks.await(legacy.document(own.getId()).update("completed", true),
+                FirebaseEmulator.TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        TodoItem other = new TodoItem("someone-else", "Not theirs", "", "other-user");
+        try {
+            Tasks.await(legacy.document(other.getId()).set(TodoItemCodec.toMap(other)),
+                    FirebaseEmulator.TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            fail("Created a todo for another user");
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof FirebaseFirestoreException);
+        }
+
+        migrate();
+
+        assertEquals(0, legacyTodos().size());
+        assertEquals(1, countUserTodos());
+    }
+
+    // TodoMigration is main-thread only, so it is started there and awaited here
+    private void migrate() throws Exception {
+        Task<?>[] running = new Task<?>[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> running[0] = migration.migrate(userId));
+        Tasks.await(running[0], FirebaseEmulator.TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    // Written in bulk with the emulator's owner credentials, as earlier builds left them
+    private void seedLegacyTodos(int from, int to) throws Exception {
+        for (int start = from; start < to; start += SEED_BATCH_SIZE) {
+            Map<String, Map<String, Object>> documents = new HashMap<>();
+            for (int i = start; i < Math.min(start + SEED_BATCH_SIZE, to); i++) {
+                Map<String, Object> fields = new HashMap<>();
+                fields.put("id", legacyId(i));
+                fields.put("title", "Legacy task " + i);
+                fields.put("description", "Written before the move");
+                fields.put("completed", i % 3 == 0);
+                fields.put("createdAt", createdAt(i));
+                fields.put("updatedAt", createdAt(i));
+                fields.put("deleted", false);
+                fields.put("userId", userId);
+                documents.put(Constants.TODOS_COLLECTION + "/" + legacyId(i), fields);
+            }
+            FirebaseEmulator.writeAsOwner(documents);
+        }
+    }
+
+    private List<DocumentSnapshot> legacyTodos() throws Exception {
+        return Tasks.await(FirebaseHelper.getLegacyTodos(userId, 1000),
+                FirebaseEmulator.TIMEOUT_SECONDS, TimeUnit.SECONDS).getDocuments();
+    }
+
+    private long countUserTodos() throws Exception {
+        return Tasks.await(FirebaseHelper.getFirestore()
+                .collection(Constants.USERS_COLLECTION).document(userId)
+                .collection(Constants.TODOS_COLLECTION)
+                .count().get(AggregateSource.SERVER),
+                FirebaseEmulator.TIMEOUT_SECONDS, TimeUnit.SECONDS).getCount();
+    }
+
+    private static String legacyId(int index) {
+        return String.format(Locale.ROOT, "legacy-%04d", index);
+    }
+
+    private static long createdAt(int index) {
+        return 1_700_000_000_000L + index;
+    }
+}
@@ -0,0 +1,192 @@
+package com.sitani.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import android.app.Instrumentation;
+import android.os.Build;
+import android.os.Looper;
+import android.os.StrictMode;
+import android.os.strictmode.Violation;
+import android.view.Choreographer;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.android.gms.tasks.Tasks;
+import com.sitani.models.TodoItem;
+import com.sitani.models.TodoSummary;
+import com.sitani.utils.FirebaseEmulator;
+import com.sitani.utils.FirebaseHelper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads 5,000 todos from the Firestore emulator the way the todo and home screens do, with
+ * StrictMode watching the main thread for disk access and a frame callback timing every frame.
+ * Snapshots are processed and stored off the main thread, so neither may notice the load.
+ * Needs the emulators from firebase.json running and API 28+ for the StrictMode listener.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TodoRepositoryMainThreadTest {
+    private static final int TODOS = 5000;
+    private static final int BATCH_SIZE = 500;
+    // Six frames at 60 Hz; mapping 5,000 documents on the main thread takes far longer
+    private static final long MAX_FRAME_GAP_MS = 100;
+
+    private static String userId;
+
+    private final Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+    private final List<Violation> violations = Collections.synchronizedList(new ArrayList<>());
+    private TodoRepository repository;
+    private StrictMode.ThreadPolicy previousPolicy;
+    private volatile boolean timingFrames;
+    private volatile long maxFrameGapNanos;
+
+    @BeforeClass
+    public static void seed() throws Exception {
+        FirebaseEmulator.connect();
+        FirebaseEmulator.clear();
+        userId = FirebaseEmulator.createUser("main-thread@sitani.test");
+        for (int start = 0; start < TODOS; start += BATCH_SIZE) {
+            Map<String, TodoItem> sets = new HashMap<>();
+            for (int i = start; i < start + BATCH_SIZE; i++) {
+                TodoItem todoItem = new TodoItem("todo-" + i, "Task " + i, "Seeded todo", userId);
+                todoItem.setCompleted(i % 2 == 0);
+                sets.put(todoItem.getId(), todoItem);
+            }
+            FirebaseEmulator.<Void>await(listener -> FirebaseHelper.commitTodoBatch(
+                    userId, sets, Collections.emptyMap(), listener));
+        }
+    }
+
+    @Before
+    public void watchMainThread() {
+        assumeTrue(Build.VERSION.SDK_INT >= Build.VERSION_CODES.P);
+        // Opening the database and preferences is startup work, not part of the load
+        repository = TodoRepository.getInstance(instrumentation.getTargetContext());
+        repository.isBackfillComplete(userId);
+
+        instrumentation.runOnMainSync(() -> {
+            previousPolicy = StrictMode.getThreadPolicy();
+            StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                    .detectDiskReads()
+                    .detectDiskWrites()
+                    .detectCustomSlowCalls()
+                    .penaltyListener(Runnable::run, violations::add)
+                    .build());
+            timingFrames = true;
+            Choreographer.getInstance().postFrameCallback(new Choreographer.FrameCallback() {
+                private long lastFrameNanos;
+
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    if (lastFrameNanos != 0) {
+                        maxFrameGapNanos = Math.max(maxFrameGapNanos, frameTimeNanos - lastFrameNanos);
+                    }
+                    lastFrameNanos = frameTimeNanos;
+                    if (timingFrames) {
+                        Choreographer.getInstance().postFrameCallback(this);
+                    }
+                }
+            });
+        });
+    }
+
+    @After
+    public void restoreMainThread() {
+        timingFrames = false;
+        if (previousPolicy != null) {
+            instrumentation.runOnMainSync(() -> StrictMode.setThreadPolicy(previousPolicy));
+        }
+    }
+
+    @Test
+    public void loadingTodosLeavesMainThreadFree() throws Exception {
+        AtomicInteger backfilled = new AtomicInteger();
+        AtomicInteger offMainDeliveries = new AtomicInteger();
+        TodoRepository.OnTodoChangesListener listener = new TodoRepository.OnTodoChangesListener() {
+            @Override
+            public void onTodoChanges(TodoRepository.TodoChanges changes) {
+                if (Looper.myLooper() != Looper.getMainLooper()) {
+                    offMainDeliveries.incrementAndGet();
+                }
+                backfilled.addAndGet(changes.upserted.size());
+            }
+
+            @Override
+            public void onError(Exception e) {
+                // Backfill failures fail the task awaited below
+            }
+        };
+
+        Task<Void> backfill = onMain(() -> {
+            repository.addBackfillListener(listener);
+            return repository.backfillTodos(userId);
+        });
+        try {
+            Tasks.await(backfill, FirebaseEmulator.TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } finally {
+            instrumentation.runOnMainSync(() -> repository.removeBackfillListener(listener));
+        }
+
+        List<TodoItem> all = awaitOnMain(done -> repository.getTodoView(
+                userId, TodoViews.Filter.ALL, TodoViews.Sort.NEWEST, done));
+        List<TodoItem> page = awaitOnMain(done -> repository.createPagingSource(userId).loadNextPage(done));
+        TodoSummary summary = awaitOnMain(done -> {
+            FirebaseHelper.invalidateTodoSummary();
+            repository.getTodoSummary(userId, done);
+        });
+        // Let at least one more frame land after the last result was delivered
+        instrumentation.waitForIdleSync();
+
+        assertEquals(TODOS, backfilled.get());
+        assertEquals(0, offMainDeliveries.get());
+        assertEquals(TODOS, all.size());
+        assertEquals(TodoPagingSource.PAGE_SIZE, page.size());
+        assertEquals(TODOS, summary.getTotalTasks());
+        assertTrue("Main thread disk access: " + violations, violations.isEmpty());
+        long maxFrameGapMs = TimeUnit.NANOSECONDS.toMillis(maxFrameGapNanos);
+        assertTrue("Longest frame gap " + maxFrameGapMs + " ms", maxFrameGapMs <= MAX_FRAME_GAP_MS);
+    }
+
+    private interface MainCall<T> {
+        T run();
+    }
+
+    private <T> T onMain(MainCall<T> call) {
+        List<T> result = new ArrayList<>(1);
+        instrumentation.runOnMainSync(() -> result.add(call.run()));
+        return result.get(0);
+    }
+
+    // Starts the call on the main thread, as the screens do, and checks its result arrives there
+    private <T> T awaitOnMain(FirebaseEmulator.Call<T> call) throws Exception {
+        TaskCompletionSource<T> source = new TaskCompletionSource<>();
+        instrumentation.runOnMainSync(() -> call.start(task -> {
+            if (Looper.myLooper() != Looper.getMainLooper()) {
+                source.setException(new IllegalStateException("Result delivered off the main thread"));
+            } else if (task.isSuccessful()) {
+                source.setResult(task.getResult());
+            } else {
+                source.setException(task.getException());
+            }
+        }));
+        return Tasks.await(source.getTask(), FirebaseEmulator.TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+}
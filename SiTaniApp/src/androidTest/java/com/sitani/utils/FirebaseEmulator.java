@@ -0,0 +1,146 @@
+package com.sitani.utils;
+
+import com.google.android.gms.tasks.OnCompleteListener;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.auth.AuthResult;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+/**
+ * Points FirebaseHelper at the Firebase Local Emulator Suite, started from the repository root
+ * with {@code firebase emulators:start}. The ports are the ones in firebase.json, and 10.0.2.2
+ * is the host machine as seen from the Android emulator.
+ */
+public final class FirebaseEmulator {
+    public static final long TIMEOUT_SECONDS = 60;
+
+    private static final String HOST = "10.0.2.2";
+    private static final int FIRESTORE_PORT = 8080;
+    private static final int AUTH_PORT = 9099;
+    private static final String PASSWORD = "emulator-password";
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+
+    private static final OkHttpClient client = new OkHttpClient();
+    private static boolean connected;
+
+    // Callback-style FirebaseHelper calls, started with the listener to complete
+    public interface Call<T> {
+        void start(OnCompleteListener<T> onCompleteListener);
+    }
+
+    private FirebaseEmulator() {
+    }
+
+    // Must run before the first Firestore or Auth operation of the process
+    public static synchronized void connect() {
+        if (!connected) {
+            FirebaseHelper.getFirestore().useEmulator(HOST, FIRESTORE_PORT);
+            FirebaseHelper.getAuth().useEmulator(HOST, AUTH_PORT);
+            connected = true;
+        }
+    }
+
+    // Deletes every document and account, so each suite starts from empty emulators
+    public static void clear() throws IOException {
+        String project = "/emulator/v1/projects/" + projectId();
+        send(new Request.Builder().url(url(FIRESTORE_PORT, project + "/databases/(default)/documents")).delete().build());
+        send(new Request.Builder().url(url(AUTH_PORT, project + "/accounts")).delete().build());
+    }
+
+    // Creates an email account and signs in as it; returns its uid
+    public static String createUser(String email) throws Exception {
+        FirebaseHelper.logoutUser();
+        AuthResult result = Tasks.await(FirebaseHelper.getAuth().createUserWithEmailAndPassword(email, PASSWORD),
+                TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        return result.getUser().getUid();
+    }
+
+    public static String signIn(String email) throws Exception {
+        FirebaseHelper.logoutUser();
+        AuthResult result = Tasks.await(FirebaseHelper.getAuth().signInWithEmailAndPassword(email, PASSWORD),
+                TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        return result.getUser().getUid();
+    }
+
+    /**
+     * Writes documents with the emulator's owner credentials, which bypass the security rules,
+     * for data the app may not create itself, such as todos in the old top-level collection.
+     * Keys are document paths such as "todos/abc"; values may be strings, numbers and booleans.
+     */
+    public static void writeAsOwner(Map<String, Map<String, Object>> documents) throws IOException, JSONException {
+        String database = "projects/" + projectId() + "/databases/(default)";
+        JSONArray writes = new JSONArray();
+        for (Map.Entry<String, Map<String, Object>> document : documents.entrySet()) {
+            JSONObject fields = new JSONObject();
+            for (Map.Entry<String, Object> field : document.getValue().entrySet()) {
+                fields.put(field.getKey(), toValue(field.getValue()));
+            }
+            writes.put(new JSONObject().put("update", new JSONObject()
+                    .put("name", database + "/documents/" + document.getKey())
+                    .put("fields", fields)));
+        }
+        RequestBody body = RequestBody.create(new JSONObject().put("writes", writes).toString(), JSON);
+        send(new Request.Builder()
+                .url(url(FIRESTORE_PORT, "/v1/" + database + "/documents:commit"))
+                .header("Authorization", "Bearer owner")
+                .post(body)
+                .build());
+    }
+
+    // Runs a callback-style call and waits for its result, rethrowing its failure
+    public static <T> T await(Call<T> call) throws Exception {
+        TaskCompletionSource<T> source = new TaskCompletionSource<>();
+        call.start(task -> {
+            if (task.isSuccessful()) {
+                source.setResult(task.getResult());
+            } else {
+                source.setException(task.getException());
+            }
+        });
+        return Tasks.await(source.getTask(), TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private static JSONObject toValue(Object value) throws JSONException {
+        if (value instanceof String) {
+            return new JSONObject().put("stringValue", value);
+        } else if (value instanceof Boolean) {
+            return new JSONObject().put("booleanValue", value);
+        } else if (value instanceof Integer || value instanceof Long) {
+            // The REST API takes 64-bit integers as strings
+            return new JSONObject().put("integerValue", String.valueOf(value));
+        } else if (value instanceof Number) {
+            return new JSONObject().put("doubleValue", value);
+        }
+        throw new IllegalArgumentException("Unsupported field value " + value);
+    }
+
+    private static String projectId() {
+        return FirebaseApp.getInstance().getOptions().getProjectId();
+    }
+
+    private static String url(int port, String path) {
+        return "http://" + HOST + ":" + port + path;
+    }
+
+    private static void send(Request request) throws IOException {
+        try (Response response = client.newCall(request).execute()) {
+            if (!response.isSuccessful()) {
+                throw new IOException(request.method() + " " + request.url() + " failed: " + response.code());
+            }
+        }
+    }
+}
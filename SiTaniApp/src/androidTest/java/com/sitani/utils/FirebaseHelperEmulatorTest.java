@@ -0,0 +1,251 @@
+package com.sitani.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.os.SystemClock;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.sitani.data.TodoPagingSource;
+import com.sitani.models.TodoItem;
+import com.sitani.models.TodoSummary;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs the todo queries against 10,000 todos spread over ten users in the Firestore emulator.
+ * Every query is scoped to one user's subcollection, so what it reads and how long it takes
+ * must not depend on the other users' data; the first user's queries are also run before the
+ * other nine are seeded, and must read the same documents afterwards. Needs the emulators from firebase.json running.
+ */
+@RunWith(AndroidJUnit4.class)
+public class FirebaseHelperEmulatorTest {
+    private static final int USERS = 10;
+    private static final int TODOS_PER_USER = 1000;
+    private static final int BATCH_SIZE = 500;
+    private static final int PAGE_SIZE = TodoPagingSource.PAGE_SIZE;
+    // Generous for an emulator on a CI host; a query scanning all 10,000 todos would not get near it
+    private static final long MAX_QUERY_MILLIS = 1500;
+    private static final long FIRST_CREATED_AT = 1_700_000_000_000L;
+
+    private static final Executor DIRECT = Runnable::run;
+
+    private String userId;
+
+    // What user 0's queries read while they were the only user, before the other nine were seeded
+    private static ReadProfile oneUserReads;
+
+    @BeforeClass
+    public static void seed() throws Exception {
+        FirebaseEmulator.connect();
+        FirebaseEmulator.clear();
+        for (int user = 0; user < USERS; user++) {
+            String seededUserId = FirebaseEmulator.createUser(email(user));
+            for (int start = 0; start < TODOS_PER_USER; start += BATCH_SIZE) {
+                Map<String, TodoItem> sets = new HashMap<>();
+                for (int i = start; i < start + BATCH_SIZE; i++) {
+                    TodoItem todoItem = new TodoItem(todoId(i), "Task " + i, "Seeded todo", seededUserId);
+                    todoItem.setCreatedAt(FIRST_CREATED_AT + i);
+                    // Every fourth todo is done
+                    todoItem.setCompleted(i % 4 == 0);
+                    sets.put(todoItem.getId(), todoItem);
+                }
+                FirebaseEmulator.<Void>await(listener -> FirebaseHelper.commitTodoBatch(
+                        seededUserId, sets, Collections.emptyMap(), listener));
+            }
+            if (user == 0) {
+                readPage(seededUserId, 0L, null);
+                oneUserReads = ReadProfile.read(seededUserId);
+            }
+        }
+    }
+
+    @Before
+    public void signIn() throws Exception {
+        userId = FirebaseEmulator.signIn(email(0));
+        // Connection setup and the first query plan are not what is being measured
+        readPage(0L, null);
+    }
+
+    @Test
+    public void readsDoNotGrowWithOtherUsers() throws Exception {
+        ReadProfile tenUserReads = ReadProfile.read(userId);
+
+        assertEquals(oneUserReads.pageSizes, tenUserReads.pageSizes);
+        assertEquals(oneUserReads.firstPageIds, tenUserReads.firstPageIds);
+        assertEquals(oneUserReads.latestReads, tenUserReads.latestReads);
+        assertEquals(oneUserReads.totalTasks, tenUserReads.totalTasks);
+        assertEquals(oneUserReads.pendingTasks, tenUserReads.pendingTasks);
+        // Emulator timings are noisy, so only a clear slowdown counts
+        assertTrue("1 user: " + oneUserReads.millis + " ms, 10 users: " + tenUserReads.millis + " ms",
+                tenUserReads.millis <= Math.max(2 * oneUserReads.millis, MAX_QUERY_MILLIS));
+    }
+
+    @Test
+    public void firstPageReadsOnlyOnePage() throws Exception {
+        long start = SystemClock.elapsedRealtime();
+        QuerySnapshot page = readPage(0L, null);
+        long elapsed = SystemClock.elapsedRealtime() - start;
+
+        assertFalse(page.getMetadata().isFromCache());
+        assertEquals(PAGE_SIZE, page.size());
+        assertEquals(todoId(TODOS_PER_USER - 1), page.getDocuments().get(0).getId());
+        assertTrue("First page took " + elapsed + " ms", elapsed <= MAX_QUERY_MILLIS);
+    }
+
+    @Test
+    public void keysetPagesReadEachTodoOnce() throws Exception {
+        Set<String> seen = new HashSet<>();
+        long afterCreatedAt = 0L;
+        String afterId = null;
+        long slowest = 0;
+        while (true) {
+            long start = SystemClock.elapsedRealtime();
+            QuerySnapshot page = readPage(afterCreatedAt, afterId);
+            slowest = Math.max(slowest, SystemClock.elapsedRealtime() - start);
+
+            assertTrue(page.size() <= PAGE_SIZE);
+            for (DocumentSnapshot document : page.getDocuments()) {
+                assertTrue("Read twice: " + document.getId(), seen.add(document.getId()));
+            }
+            if (page.size() < PAGE_SIZE) {
+                break;
+            }
+            DocumentSnapshot last = page.getDocuments().get(page.size() - 1);
+            afterCreatedAt = last.getLong("createdAt");
+            afterId = last.getId();
+        }
+
+        assertEquals(TODOS_PER_USER, seen.size());
+        // Deep pages start from the cursor instead of skipping over the earlier ones
+        assertTrue("Slowest page took " + slowest + " ms", slowest <= MAX_QUERY_MILLIS);
+    }
+
+    @Test
+    public void summaryCountsOnlyTheUsersTodos() throws Exception {
+        FirebaseHelper.invalidateTodoSummary();
+
+        long start = SystemClock.elapsedRealtime();
+        TodoSummary summary = FirebaseEmulator.await(listener -> FirebaseHelper.getTodoSummary(userId, listener));
+        long elapsed = SystemClock.elapsedRealtime() - start;
+
+        assertEquals(TODOS_PER_USER, summary.getTotalTasks());
+        assertEquals(TODOS_PER_USER * 3 / 4, summary.getPendingTasks());
+        assertTrue("Summary took " + elapsed + " ms", elapsed <= MAX_QUERY_MILLIS);
+    }
+
+    @Test
+    public void changeQueryReadsOnlyChangedTodos() throws Exception {
+        QuerySnapshot latest = FirebaseEmulator.await(listener ->
+                FirebaseHelper.getLatestTodoUpdate(userId, DIRECT, listener));
+        assertEquals(1, latest.size());
+        long watermark = FirebaseHelper.toTodoItem(latest.getDocuments().get(0)).getUpdatedAt();
+
+        Map<String, Map<String, Object>> updates = new HashMap<>();
+        for (int i = 0; i < 3; i++) {
+            updates.put(todoId(i), Collections.singletonMap("title", "Changed " + i));
+        }
+        FirebaseEmulator.<Void>await(listener -> FirebaseHelper.commitTodoBatch(
+                userId, Collections.emptyMap(), updates, listener));
+
+        long start = SystemClock.elapsedRealtime();
+        QuerySnapshot changes = FirebaseEmulator.await(listener ->
+                FirebaseHelper.getUserTodosUpdatedSince(userId, watermark + 1, DIRECT, listener));
+        long elapsed = SystemClock.elapsedRealtime() - start;
+
+        assertEquals(updates.keySet(), idsOf(changes.getDocuments()));
+        assertTrue("Change query took " + elapsed + " ms", elapsed <= MAX_QUERY_MILLIS);
+    }
+
+    private QuerySnapshot readPage(long afterCreatedAt, String afterId) throws Exception {
+        return readPage(userId, afterCreatedAt, afterId);
+    }
+
+    private static QuerySnapshot readPage(String userId, long afterCreatedAt, String afterId) throws Exception {
+        return FirebaseEmulator.await(listener -> FirebaseHelper.getUserTodosPage(
+                userId, afterCreatedAt, afterId, PAGE_SIZE, DIRECT, listener));
+    }
+
+    // Documents returned by each of a user's queries, and how long they took together
+    private static final class ReadProfile {
+        final List<Integer> pageSizes = new ArrayList<>();
+        final List<String> firstPageIds = new ArrayList<>();
+        int latestReads;
+        long totalTasks;
+        long pendingTasks;
+        long millis;
+
+        static ReadProfile read(String userId) throws Exception {
+            ReadProfile profile = new ReadProfile();
+            long start = SystemClock.elapsedRealtime();
+            long afterCreatedAt = 0L;
+            String afterId = null;
+            while (true) {
+                QuerySnapshot page = readPage(userId, afterCreatedAt, afterId);
+                profile.pageSizes.add(page.size());
+                if (profile.firstPageIds.isEmpty()) {
+                    profile.firstPageIds.addAll(idsInOrder(page.getDocuments()));
+                }
+                if (page.size() < PAGE_SIZE) {
+                    break;
+                }
+                DocumentSnapshot last = page.getDocuments().get(page.size() - 1);
+                afterCreatedAt = last.getLong("createdAt");
+                afterId = last.getId();
+            }
+
+            QuerySnapshot latest = FirebaseEmulator.await(listener ->
+                    FirebaseHelper.getLatestTodoUpdate(userId, DIRECT, listener));
+            profile.latestReads = latest.size();
+
+            FirebaseHelper.invalidateTodoSummary();
+            TodoSummary summary = FirebaseEmulator.await(listener -> FirebaseHelper.getTodoSummary(userId, listener));
+            profile.totalTasks = summary.getTotalTasks();
+            profile.pendingTasks = summary.getPendingTasks();
+            profile.millis = SystemClock.elapsedRealtime() - start;
+            return profile;
+        }
+    }
+
+    private static List<String> idsInOrder(List<DocumentSnapshot> documents) {
+        List<String> ids = new ArrayList<>();
+        for (DocumentSnapshot document : documents) {
+            ids.add(document.getId());
+        }
+        return ids;
+    }
+
+    private static Set<String> idsOf(List<DocumentSnapshot> documents) {
+        Set<String> ids = new HashSet<>();
+        for (DocumentSnapshot document : documents) {
+            ids.add(document.getId());
+        }
+        return ids;
+    }
+
+    private static String email(int user) {
+        return "user" + user + "@sitani.test";
+    }
+
+    // Zero-padded, so id order matches creation order
+    private static String todoId(int index) {
+        return String.format(Locale.ROOT, "todo-%05d", index);
+    }
+}
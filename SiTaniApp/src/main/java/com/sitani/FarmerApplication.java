@@ -6,6 +6,7 @@ public class FarmerApplication extends Application {
     @Override
     public void onCreate() {
         super.onCreate();
-        // Initialize any global components here
+        // Global components are set up by the App Startup initializers in com.sitani.startup,
+        // declared in the manifest; keep this method free of blocking work
     }
-}
\ No newline at end of file
+}
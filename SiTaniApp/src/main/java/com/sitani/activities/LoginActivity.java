@@ -12,7 +12,6 @@ import androidx.appcompat.app.AppCompatActivity;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.textfield.TextInputEditText;
 import com.google.android.material.textfield.TextInputLayout;
-import com.google.firebase.auth.FirebaseUser;
 import com.sitani.R;
 import com.sitani.utils.FirebaseHelper;
 
@@ -31,7 +30,6 @@ public class LoginActivity extends AppCompatActivity {
 
         initViews();
         setupClickListeners();
-        checkCurrentUser();
     }
 
     private void initViews() {
@@ -54,14 +52,6 @@ public class LoginActivity extends AppCompatActivity {
         });
     }
 
-    private void checkCurrentUser() {
-        FirebaseUser currentUser = FirebaseHelper.getCurrentUser();
-        if (currentUser != null) {
-            startActivity(new Intent(LoginActivity.this, MainActivity.class));
-            finish();
-        }
-    }
-
     private void attemptLogin() {
         // Reset errors
         emailInputLayout.setError(null);
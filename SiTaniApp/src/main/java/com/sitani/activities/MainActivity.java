@@ -5,10 +5,14 @@ import android.content.pm.PackageManager;
 import android.content.Intent;
 import android.location.Location;
 import android.os.Bundle;
+import android.text.format.DateUtils;
+import android.view.LayoutInflater;
 import android.view.View;
+import android.widget.ImageButton;
 import android.widget.ImageView;
 import android.widget.ProgressBar;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.RequiresPermission;
@@ -16,6 +20,8 @@ import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.gms.location.FusedLocationProviderClient;
 import com.google.android.gms.location.LocationServices;
@@ -23,46 +29,57 @@ import com.google.android.gms.tasks.OnSuccessListener;
 import com.google.android.material.appbar.MaterialToolbar;
 import com.google.android.material.bottomnavigation.BottomNavigationView;
 import com.google.android.material.card.MaterialCardView;
+import com.google.android.material.textfield.TextInputEditText;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.firestore.DocumentSnapshot;
-import com.google.firebase.firestore.QuerySnapshot;
 import com.sitani.R;
-import com.sitani.models.TodoItem;
+import com.sitani.adapters.FieldWeatherAdapter;
+import com.sitani.data.TodoRepository;
+import com.sitani.data.UserRepository;
+import com.sitani.data.WeatherRepository;
+import com.sitani.models.FarmField;
+import com.sitani.models.TodoSummary;
 import com.sitani.models.User;
 import com.sitani.models.WeatherResponse;
+import com.sitani.models.WeatherSeries;
 import com.sitani.notifications.WeatherNotificationService;
+import com.sitani.notifications.WeatherWorker;
 import com.sitani.utils.Constants;
 import com.sitani.utils.FirebaseHelper;
-import com.sitani.utils.WeatherApiClient;
 
 import java.util.List;
 
-import retrofit2.Call;
-import retrofit2.Callback;
-import retrofit2.Response;
-
 public class MainActivity extends AppCompatActivity {
 
     private MaterialToolbar toolbar;
     private BottomNavigationView bottomNavigation;
     private TextView welcomeTextView, userNameTextView;
     private TextView temperatureTextView, descriptionTextView, locationTextView;
-    private TextView humidityTextView, windSpeedTextView;
+    private TextView humidityTextView, windSpeedTextView, weatherUpdatedTextView, forecastTextView;
     private TextView taskCountTextView, taskSummaryTextView;
     private MaterialCardView weatherCard, todoSummaryCard;
     private ProgressBar weatherProgressBar;
     private ImageView weatherIconImageView;
+    private RecyclerView fieldsRecyclerView;
+    private ImageButton addFieldButton;
+    private FieldWeatherAdapter fieldWeatherAdapter;
 
     private FusedLocationProviderClient fusedLocationClient;
     private WeatherNotificationService notificationService;
+    private WeatherRepository weatherRepository;
+    private UserRepository userRepository;
+    private TodoRepository todoRepository;
     private User currentUser;
     private Location currentLocation;
+    private boolean fullyDrawnReported;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
+        weatherRepository = WeatherRepository.getInstance(this);
+        userRepository = UserRepository.getInstance(this);
+        todoRepository = TodoRepository.getInstance(this);
         initViews();
         setupToolbar();
         setupBottomNavigation();
@@ -83,11 +100,20 @@ public class MainActivity extends AppCompatActivity {
         locationTextView = findViewById(R.id.locationTextView);
         humidityTextView = findViewById(R.id.humidityTextView);
         windSpeedTextView = findViewById(R.id.windSpeedTextView);
+        weatherUpdatedTextView = findViewById(R.id.weatherUpdatedTextView);
+        forecastTextView = findViewById(R.id.forecastTextView);
         taskCountTextView = findViewById(R.id.taskCountTextView);
         taskSummaryTextView = findViewById(R.id.taskSummaryTextView);
         weatherCard = findViewById(R.id.weatherCard);
         todoSummaryCard = findViewById(R.id.todoSummaryCard);
         weatherProgressBar = findViewById(R.id.weatherProgressBar);
+        fieldsRecyclerView = findViewById(R.id.fieldsRecyclerView);
+        addFieldButton = findViewById(R.id.addFieldButton);
+
+        fieldWeatherAdapter = new FieldWeatherAdapter();
+        fieldsRecyclerView.setLayoutManager(new LinearLayoutManager(this));
+        fieldsRecyclerView.setAdapter(fieldWeatherAdapter);
+        addFieldButton.setOnClickListener(v -> showAddFieldDialog());
     }
 
     private void setupToolbar() {
@@ -125,22 +151,21 @@ public class MainActivity extends AppCompatActivity {
 
     private void setupNotificationService() {
         notificationService = new WeatherNotificationService(this);
+        WeatherWorker.schedule(this);
     }
 
     private void loadUserData() {
+        userRepository.getUser().observe(this, user -> {
+            if (user != null) {
+                currentUser = user;
+                updateWelcomeMessage();
+                loadFieldWeather();
+            }
+        });
+
         FirebaseUser firebaseUser = FirebaseHelper.getCurrentUser();
         if (firebaseUser != null) {
-            FirebaseHelper.getUser(firebaseUser.getUid(), task -> {
-                if (task.isSuccessful()) {
-                    DocumentSnapshot document = task.getResult();
-                    if (document != null && document.exists()) {
-                        currentUser = document.toObject(User.class);
-                        if (currentUser != null) {
-                            updateWelcomeMessage();
-                        }
-                    }
-                }
-            });
+            userRepository.loadUser(firebaseUser.getUid());
         }
     }
 
@@ -151,6 +176,73 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
+    private void loadFieldWeather() {
+        List<FarmField> fields = currentUser.getFields();
+        fieldWeatherAdapter.setFields(fields);
+        if (fields.isEmpty()) {
+            return;
+        }
+
+        weatherRepository.getWeatherForFields(fields, new WeatherRepository.FieldWeatherCallback() {
+            @Override
+            public void onFieldWeather(FarmField field, WeatherResponse weather, long fetchedAt) {
+                fieldWeatherAdapter.setWeather(field, weather);
+            }
+
+            @Override
+            public void onFieldError(FarmField field, Throwable t) {
+                fieldWeatherAdapter.setError(field);
+            }
+        });
+    }
+
+    private void showAddFieldDialog() {
+        if (currentUser == null) {
+            return;
+        }
+        if (currentLocation == null) {
+            Toast.makeText(this, R.string.field_location_unavailable, Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        View dialogView = LayoutInflater.from(this).inflate(R.layout.dialog_add_field, null);
+        TextInputEditText fieldNameEditText = dialogView.findViewById(R.id.fieldNameEditText);
+        Location location = currentLocation;
+
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.add_field)
+                .setMessage(R.string.add_field_message)
+                .setView(dialogView)
+                .setPositiveButton(R.string.save, (dialog, which) -> {
+                    String name = fieldNameEditText.getText().toString().trim();
+                    if (name.isEmpty()) {
+                        Toast.makeText(this, R.string.error_fields, Toast.LENGTH_SHORT).show();
+                        return;
+                    }
+                    addField(new FarmField(name, location.getLatitude(), location.getLongitude()));
+                })
+                .setNegativeButton(R.string.cancel, null)
+                .show();
+    }
+
+    private void addField(FarmField field) {
+        User previous = currentUser;
+        User updated = new User(currentUser);
+        updated.getFields().add(field);
+        currentUser = updated;
+        loadFieldWeather();
+
+        userRepository.saveUser(updated, task -> {
+            if (task.isSuccessful()) {
+                Toast.makeText(MainActivity.this, R.string.field_added, Toast.LENGTH_SHORT).show();
+            } else {
+                currentUser = previous;
+                loadFieldWeather();
+                Toast.makeText(MainActivity.this, R.string.error_network, Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
     private void loadWeatherData() {
         checkLocationPermission();
     }
@@ -188,6 +280,7 @@ public class MainActivity extends AppCompatActivity {
                     public void onSuccess(Location location) {
                         if (location != null) {
                             currentLocation = location;
+                            saveLastLocation(location);
                             loadWeatherForLocation(location.getLatitude(), location.getLongitude());
                         } else {
                             loadWeatherForDefaultLocation();
@@ -196,9 +289,17 @@ public class MainActivity extends AppCompatActivity {
                 });
     }
 
+    // Read by WeatherWorker to prefetch weather for the morning notification
+    private void saveLastLocation(Location location) {
+        getSharedPreferences(Constants.PREFS_NAME, MODE_PRIVATE).edit()
+                .putLong(Constants.KEY_LAST_LATITUDE, Double.doubleToRawLongBits(location.getLatitude()))
+                .putLong(Constants.KEY_LAST_LONGITUDE, Double.doubleToRawLongBits(location.getLongitude()))
+                .apply();
+    }
+
     private void loadWeatherForDefaultLocation() {
         // Default to Jakarta coordinates
-        loadWeatherForLocation(-6.2088, 106.8456);
+        loadWeatherForLocation(Constants.DEFAULT_LATITUDE, Constants.DEFAULT_LONGITUDE);
     }
 
     private void loadWeatherForLocation(double lat, double lon) {
@@ -211,25 +312,46 @@ public class MainActivity extends AppCompatActivity {
             return;
         }
 
-        WeatherApiClient.getWeatherService()
-                .getCurrentWeather(lat, lon, apiKey, "metric")
-                .enqueue(new Callback<WeatherResponse>() {
-                    @Override
-                    public void onResponse(Call<WeatherResponse> call, Response<WeatherResponse> response) {
-                        weatherProgressBar.setVisibility(View.GONE);
-                        if (response.isSuccessful() && response.body() != null) {
-                            updateWeatherUI(response.body());
-                        } else {
-                            showSampleWeatherData();
-                        }
-                    }
+        weatherRepository.getWeather(lat, lon, new WeatherRepository.WeatherCallback() {
+            @Override
+            public void onWeather(WeatherResponse weather, long fetchedAt) {
+                updateWeatherUI(weather);
+                showWeatherUpdatedAt(fetchedAt);
+            }
 
-                    @Override
-                    public void onFailure(Call<WeatherResponse> call, Throwable t) {
-                        weatherProgressBar.setVisibility(View.GONE);
-                        showSampleWeatherData();
-                    }
-                });
+            @Override
+            public void onError(Throwable t) {
+                weatherProgressBar.setVisibility(View.GONE);
+                showSampleWeatherData();
+            }
+        });
+
+        weatherRepository.getForecast(lat, lon, new WeatherRepository.ForecastCallback() {
+            @Override
+            public void onForecast(WeatherSeries forecast) {
+                updateForecastUI(forecast);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                forecastTextView.setVisibility(View.GONE);
+            }
+        });
+    }
+
+    private void updateForecastUI(WeatherSeries forecast) {
+        long now = System.currentTimeMillis();
+        long dayLater = now + DateUtils.DAY_IN_MILLIS;
+        forecastTextView.setText(getString(R.string.forecast_next_24h,
+                forecast.totalRain(now, dayLater), forecast.maxWindSpeed(now, dayLater)));
+        forecastTextView.setVisibility(View.VISIBLE);
+    }
+
+    private void showWeatherUpdatedAt(long fetchedAt) {
+        CharSequence relativeTime = DateUtils.getRelativeTimeSpanString(
+                fetchedAt, System.currentTimeMillis(), DateUtils.MINUTE_IN_MILLIS);
+        weatherUpdatedTextView.setText(getString(R.string.weather_last_updated, relativeTime));
+        weatherUpdatedTextView.setVisibility(View.VISIBLE);
     }
 
     private void showSampleWeatherData() {
@@ -276,30 +398,28 @@ public class MainActivity extends AppCompatActivity {
         locationTextView.setText(location);
 
         weatherProgressBar.setVisibility(View.GONE);
+        reportFullyDrawnOnce();
+    }
+
+    // The weather card is the main content; marks time to full display for startup metrics
+    private void reportFullyDrawnOnce() {
+        if (!fullyDrawnReported) {
+            fullyDrawnReported = true;
+            reportFullyDrawn();
+        }
     }
 
     private void loadTodoSummary() {
         FirebaseUser firebaseUser = FirebaseHelper.getCurrentUser();
         if (firebaseUser != null) {
-            FirebaseHelper.getUserTodos(firebaseUser.getUid(), task -> {
-                if (task.isSuccessful()) {
-                    QuerySnapshot querySnapshot = task.getResult();
-                    if (querySnapshot != null) {
-                        List<com.google.firebase.firestore.DocumentSnapshot> documents = querySnapshot.getDocuments();
-                        int totalTasks = documents.size();
-                        int pendingTasks = 0;
-
-                        for (com.google.firebase.firestore.DocumentSnapshot doc : documents) {
-                            TodoItem todoItem = doc.toObject(TodoItem.class);
-                            if (todoItem != null && !todoItem.isCompleted()) {
-                                pendingTasks++;
-                            }
+            // Counts only cover migrated todos; a failed migration still shows what has moved
+            todoRepository.migrateTodos(firebaseUser.getUid(), migrated ->
+                    todoRepository.getTodoSummary(firebaseUser.getUid(), task -> {
+                        if (task.isSuccessful() && task.getResult() != null) {
+                            TodoSummary summary = task.getResult();
+                            updateTodoSummary((int) summary.getTotalTasks(), (int) summary.getPendingTasks());
                         }
-
-                        updateTodoSummary(totalTasks, pendingTasks);
-                    }
-                }
-            });
+                    }));
         }
     }
 
@@ -326,6 +446,7 @@ public class MainActivity extends AppCompatActivity {
                 .setMessage("Are you sure you want to logout?")
                 .setPositiveButton("Logout", (dialog, which) -> {
                     FirebaseHelper.logoutUser();
+                    userRepository.clear();
                     Intent intent = new Intent(MainActivity.this, LoginActivity.class);
                     intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
                     startActivity(intent);
@@ -13,8 +13,8 @@ import com.google.android.material.button.MaterialButton;
 import com.google.android.material.textfield.TextInputEditText;
 import com.google.android.material.textfield.TextInputLayout;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.firestore.DocumentSnapshot;
 import com.sitani.R;
+import com.sitani.data.UserRepository;
 import com.sitani.models.User;
 import com.sitani.utils.FirebaseHelper;
 
@@ -26,6 +26,7 @@ public class ProfileActivity extends AppCompatActivity {
     private MaterialButton saveButton, cancelButton, logoutButton;
     private ProgressBar progressBar;
 
+    private UserRepository userRepository;
     private User currentUser;
     private boolean hasChanges = false;
 
@@ -34,6 +35,7 @@ public class ProfileActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_profile);
 
+        userRepository = UserRepository.getInstance(this);
         initViews();
         setupToolbar();
         setupClickListeners();
@@ -121,21 +123,20 @@ public class ProfileActivity extends AppCompatActivity {
     }
 
     private void loadUserData() {
-        showProgress(true);
+        userRepository.getUser().observe(this, user -> {
+            // Keep what the user is typing if a newer copy arrives mid-edit
+            if (user != null && !hasChanges) {
+                currentUser = new User(user);
+                populateFields();
+            }
+        });
 
         FirebaseUser firebaseUser = FirebaseHelper.getCurrentUser();
         if (firebaseUser != null) {
-            FirebaseHelper.getUser(firebaseUser.getUid(), task -> {
+            showProgress(userRepository.getUser().getValue() == null);
+            userRepository.loadUser(firebaseUser.getUid(), task -> {
                 showProgress(false);
-                if (task.isSuccessful()) {
-                    DocumentSnapshot document = task.getResult();
-                    if (document != null && document.exists()) {
-                        currentUser = document.toObject(User.class);
-                        if (currentUser != null) {
-                            populateFields();
-                        }
-                    }
-                } else {
+                if (!task.isSuccessful() && currentUser == null) {
                     Toast.makeText(this, "Failed to load user data", Toast.LENGTH_SHORT).show();
                 }
             });
@@ -182,7 +183,7 @@ public class ProfileActivity extends AppCompatActivity {
             currentUser.setAddress(address);
 
             showProgress(true);
-            FirebaseHelper.saveUser(currentUser, task -> {
+            userRepository.saveUser(currentUser, task -> {
                 showProgress(false);
                 if (task.isSuccessful()) {
                     hasChanges = false;
@@ -201,6 +202,7 @@ public class ProfileActivity extends AppCompatActivity {
                 .setMessage("Are you sure you want to logout?")
                 .setPositiveButton("Logout", (dialog, which) -> {
                     FirebaseHelper.logoutUser();
+                    userRepository.clear();
                     Intent intent = new Intent(ProfileActivity.this, LoginActivity.class);
                     intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
                     startActivity(intent);
@@ -0,0 +1,33 @@
+package com.sitani.activities;
+
+import android.content.Intent;
+import android.os.Bundle;
+
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.splashscreen.SplashScreen;
+
+import com.google.firebase.auth.FirebaseUser;
+import com.sitani.utils.FirebaseHelper;
+
+/**
+ * Launcher entry point. Routes to MainActivity or LoginActivity from the locally cached auth
+ * state without inflating a layout; the system splash stays up until the destination draws.
+ */
+public class SplashActivity extends AppCompatActivity {
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        SplashScreen.installSplashScreen(this);
+        super.onCreate(savedInstanceState);
+
+        FirebaseUser currentUser = FirebaseHelper.getCurrentUser();
+        if (currentUser != null) {
+            // Load the profile while MainActivity is being created
+            FirebaseHelper.prefetchUser(currentUser.getUid());
+            startActivity(new Intent(this, MainActivity.class));
+        } else {
+            startActivity(new Intent(this, LoginActivity.class));
+        }
+        finish();
+    }
+}
@@ -1,43 +1,62 @@
 package com.sitani.activities;
 
-import android.Manifest;
 import android.annotation.SuppressLint;
 import android.os.Bundle;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 import android.widget.Toast;
 
-import androidx.annotation.RequiresPermission;
+import androidx.annotation.NonNull;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.Lifecycle;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import androidx.swiperefreshlayout.widget.SwipeRefreshLayout;
 
+import com.google.android.gms.tasks.OnCompleteListener;
+import com.google.android.gms.tasks.Task;
 import com.google.android.material.appbar.MaterialToolbar;
 import com.google.android.material.button.MaterialButton;
+import com.google.android.material.chip.ChipGroup;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.android.material.textfield.TextInputEditText;
 import com.google.android.material.textfield.TextInputLayout;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.ListenerRegistration;
 import com.sitani.R;
 import com.sitani.adapters.TodoAdapter;
+import com.sitani.data.TodoPagingSource;
+import com.sitani.data.TodoRepository;
+import com.sitani.data.TodoViews;
 import com.sitani.models.TodoItem;
 import com.sitani.notifications.WeatherNotificationService;
 import com.sitani.utils.FirebaseHelper;
 
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 public class TodoActivity extends AppCompatActivity implements TodoAdapter.OnTodoClickListener {
 
+    // Rows left below the last visible one before the next page is requested
+    private static final int PREFETCH_DISTANCE = 10;
+    private static final long SEARCH_DEBOUNCE_MS = 150;
+
     private MaterialToolbar toolbar;
     private SwipeRefreshLayout swipeRefreshLayout;
     private RecyclerView todoRecyclerView;
     private TextView emptyStateText;
+    private TextView emptyStateHint;
+    private TextView partialResultsText;
+    private TextInputEditText searchEditText;
+    private ChipGroup filterChipGroup;
     private ProgressBar progressBar;
     private FloatingActionButton addTaskFab;
     private View emptyStateLayout;
@@ -45,20 +64,65 @@ public class TodoActivity extends AppCompatActivity implements TodoAdapter.OnTod
     private TodoAdapter todoAdapter;
     private List<TodoItem> todoList;
     private WeatherNotificationService notificationService;
+    private TodoRepository todoRepository;
+    private ListenerRegistration todoChangesRegistration;
+    private TodoPagingSource todoPagingSource;
+    private String searchQuery = "";
+    private TodoViews.Filter filter = TodoViews.Filter.ALL;
+    private TodoViews.Sort sort = TodoViews.Sort.NEWEST;
+    // Bumped whenever the list being shown changes, so late results for an older one are dropped
+    private int viewGeneration;
+    private final Runnable searchRunnable = this::refreshView;
+    private final TodoRepository.OnTodoChangesListener backfillListener = new TodoRepository.OnTodoChangesListener() {
+        @Override
+        public void onTodoChanges(TodoRepository.TodoChanges changes) {
+            applyTodoChanges(changes);
+        }
+
+        @Override
+        public void onError(Exception e) {
+            // Backfill failures are reported through the task returned by backfillTodos
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_todo);
 
+        todoRepository = TodoRepository.getInstance(this);
         initViews();
         setupToolbar();
         setupRecyclerView();
         setupClickListeners();
+        setupSearch();
+        setupFilters();
         setupNotificationService();
+        todoRepository.addBackfillListener(backfillListener);
         loadTodos();
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        todoRepository.removeBackfillListener(backfillListener);
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        listenForTodoChanges();
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        if (todoChangesRegistration != null) {
+            todoChangesRegistration.remove();
+            todoChangesRegistration = null;
+        }
+    }
+
     private void initViews() {
         toolbar = findViewById(R.id.toolbar);
         swipeRefreshLayout = findViewById(R.id.swipeRefreshLayout);
@@ -66,10 +130,38 @@ public class TodoActivity extends AppCompatActivity implements TodoAdapter.OnTod
         progressBar = findViewById(R.id.progressBar);
         addTaskFab = findViewById(R.id.addTaskFab);
         emptyStateLayout = findViewById(R.id.emptyStateLayout);
+        emptyStateText = findViewById(R.id.emptyStateText);
+        emptyStateHint = findViewById(R.id.emptyStateHint);
+        partialResultsText = findViewById(R.id.partialResultsText);
+        searchEditText = findViewById(R.id.searchEditText);
+        filterChipGroup = findViewById(R.id.filterChipGroup);
     }
 
     private void setupToolbar() {
         toolbar.setNavigationOnClickListener(v -> finish());
+        toolbar.setOnMenuItemClickListener(item -> {
+            TodoViews.Sort selected = sortForMenuItem(item.getItemId());
+            if (selected == null) {
+                return false;
+            }
+            item.setChecked(true);
+            sort = selected;
+            onViewChanged();
+            return true;
+        });
+    }
+
+    private TodoViews.Sort sortForMenuItem(int itemId) {
+        if (itemId == R.id.sort_newest) {
+            return TodoViews.Sort.NEWEST;
+        } else if (itemId == R.id.sort_oldest) {
+            return TodoViews.Sort.OLDEST;
+        } else if (itemId == R.id.sort_title) {
+            return TodoViews.Sort.TITLE;
+        } else if (itemId == R.id.sort_recently_updated) {
+            return TodoViews.Sort.RECENTLY_UPDATED;
+        }
+        return null;
     }
 
     private void setupRecyclerView() {
@@ -77,53 +169,289 @@ public class TodoActivity extends AppCompatActivity implements TodoAdapter.OnTod
         todoAdapter = new TodoAdapter(this);
         todoRecyclerView.setLayoutManager(new LinearLayoutManager(this));
         todoRecyclerView.setAdapter(todoAdapter);
+        todoRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (dy > 0) {
+                    prefetchIfNeeded();
+                }
+            }
+        });
     }
 
     private void setupClickListeners() {
         addTaskFab.setOnClickListener(v -> showAddTaskDialog());
 
         swipeRefreshLayout.setOnRefreshListener(() -> {
-            loadTodos();
+            syncTodos();
+            backfillTodos();
         });
     }
 
+    private void setupSearch() {
+        searchEditText.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                searchQuery = s.toString().trim();
+                searchEditText.removeCallbacks(searchRunnable);
+                if (searchQuery.isEmpty()) {
+                    onViewChanged();
+                } else {
+                    searchEditText.postDelayed(searchRunnable, SEARCH_DEBOUNCE_MS);
+                }
+            }
+        });
+    }
+
+    private void setupFilters() {
+        filterChipGroup.setOnCheckedStateChangeListener((group, checkedIds) -> {
+            int checkedId = checkedIds.isEmpty() ? R.id.filterAllChip : checkedIds.get(0);
+            if (checkedId == R.id.filterPendingChip) {
+                filter = TodoViews.Filter.PENDING;
+            } else if (checkedId == R.id.filterCompletedChip) {
+                filter = TodoViews.Filter.COMPLETED;
+            } else if (checkedId == R.id.filterTodayChip) {
+                filter = TodoViews.Filter.TODAY;
+            } else if (checkedId == R.id.filterOverdueChip) {
+                filter = TodoViews.Filter.OVERDUE;
+            } else {
+                filter = TodoViews.Filter.ALL;
+            }
+            onViewChanged();
+        });
+    }
+
+    private boolean isSearching() {
+        return !searchQuery.isEmpty();
+    }
+
+    // Only the unfiltered newest-first list is paged in; any other view covers the whole local store,
+    // which holds the full history once the backfill has completed
+    private boolean isPagedView() {
+        return !isSearching() && filter == TodoViews.Filter.ALL && sort == TodoViews.Sort.NEWEST;
+    }
+
+    private void onViewChanged() {
+        viewGeneration++;
+        submitTodos();
+    }
+
+    // Filtering, sorting and searching all run in the repository, off the main thread
+    private void refreshView() {
+        FirebaseUser currentUser = FirebaseHelper.getCurrentUser();
+        if (currentUser == null || isPagedView()) {
+            return;
+        }
+        int generation = ++viewGeneration;
+        boolean searching = isSearching();
+        OnCompleteListener<List<TodoItem>> onViewLoaded = task -> {
+            if (generation != viewGeneration) {
+                return;
+            }
+            if (task.isSuccessful()) {
+                showTodos(task.getResult());
+            } else {
+                Toast.makeText(this, searching ? getString(R.string.search_failed) : "Failed to load tasks",
+                        Toast.LENGTH_SHORT).show();
+            }
+        };
+        if (searching) {
+            todoRepository.searchTodos(currentUser.getUid(), searchQuery, filter, sort, onViewLoaded);
+        } else {
+            todoRepository.getTodoView(currentUser.getUid(), filter, sort, onViewLoaded);
+        }
+    }
+
     private void setupNotificationService() {
         notificationService = new WeatherNotificationService(this);
     }
 
-    @SuppressLint("MissingPermission")
+    // Pages are read from the local store right away; Firestore is only caught up with in the background
     private void loadTodos() {
-        showProgress(true);
-
         FirebaseUser currentUser = FirebaseHelper.getCurrentUser();
         if (currentUser != null) {
-            FirebaseHelper.getUserTodos(currentUser.getUid(), task -> {
+            showProgress(true);
+            todoPagingSource = todoRepository.createPagingSource(currentUser.getUid());
+            loadNextPage();
+            backfillTodos();
+        }
+    }
+
+    private void backfillTodos() {
+        FirebaseUser currentUser = FirebaseHelper.getCurrentUser();
+        if (currentUser == null) {
+            return;
+        }
+        todoRepository.backfillTodos(currentUser.getUid()).addOnCompleteListener(this, task -> {
+            showProgress(false);
+            updatePartialResultsHint();
+            if (!task.isSuccessful()) {
+                Toast.makeText(this, "Failed to load tasks", Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    private void loadNextPage() {
+        if (todoPagingSource == null || !todoPagingSource.canLoadMore()) {
+            return;
+        }
+        boolean firstPage = todoList.isEmpty();
+        todoPagingSource.loadNextPage(task -> {
+            if (task.isSuccessful()) {
+                appendTodos(task.getResult());
+                // An empty store on first use keeps the progress up until the backfill brings rows
+                if (!todoList.isEmpty() || todoPagingSource.isEndReached()) {
+                    showProgress(false);
+                }
+                if (firstPage) {
+                    checkPendingTasks();
+                }
+                // Short pages may not fill the screen, so check again once they are laid out
+                todoRecyclerView.post(this::prefetchIfNeeded);
+            } else {
                 showProgress(false);
-                swipeRefreshLayout.setRefreshing(false);
+                Toast.makeText(this, "Failed to load tasks", Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
 
+    private void prefetchIfNeeded() {
+        if (!isPagedView()) {
+            return;
+        }
+        LinearLayoutManager layoutManager = (LinearLayoutManager) todoRecyclerView.getLayoutManager();
+        if (layoutManager != null
+                && layoutManager.findLastVisibleItemPosition() >= todoList.size() - PREFETCH_DISTANCE) {
+            loadNextPage();
+        }
+    }
+
+    private void syncTodos() {
+        FirebaseUser currentUser = FirebaseHelper.getCurrentUser();
+        if (currentUser != null) {
+            todoRepository.syncTodos(currentUser.getUid(), task -> {
+                swipeRefreshLayout.setRefreshing(false);
                 if (task.isSuccessful()) {
-                    QuerySnapshot querySnapshot = task.getResult();
-                    if (querySnapshot != null) {
-                        todoList.clear();
-                        for (com.google.firebase.firestore.DocumentSnapshot document : querySnapshot.getDocuments()) {
-                            TodoItem todoItem = document.toObject(TodoItem.class);
-                            if (todoItem != null) {
-                                todoList.add(todoItem);
-                            }
-                        }
-                        todoAdapter.setTodoItems(todoList);
-                        updateEmptyState();
-                        checkPendingTasks();
-                    }
+                    applyTodoChanges(task.getResult());
                 } else {
                     Toast.makeText(this, "Failed to load tasks", Toast.LENGTH_SHORT).show();
                 }
             });
+        } else {
+            swipeRefreshLayout.setRefreshing(false);
+        }
+    }
+
+    private void listenForTodoChanges() {
+        FirebaseUser currentUser = FirebaseHelper.getCurrentUser();
+        if (currentUser == null || todoChangesRegistration != null) {
+            return;
+        }
+        // The first watermark comes from the server; if that fails, the next onStart tries again
+        todoRepository.ensureSyncWatermark(currentUser.getUid(), task -> {
+            if (!task.isSuccessful() || todoChangesRegistration != null
+                    || !getLifecycle().getCurrentState().isAtLeast(Lifecycle.State.STARTED)) {
+                return;
+            }
+            todoChangesRegistration = todoRepository.listenForChanges(this, currentUser.getUid(),
+                    new TodoRepository.OnTodoChangesListener() {
+                        @Override
+                        public void onTodoChanges(TodoRepository.TodoChanges changes) {
+                            applyTodoChanges(changes);
+                        }
+
+                        @Override
+                        public void onError(Exception e) {
+                            Toast.makeText(TodoActivity.this, "Failed to sync tasks", Toast.LENGTH_SHORT).show();
+                        }
+                    });
+        });
+    }
+
+    private void appendTodos(List<TodoItem> page) {
+        Set<String> loadedIds = new HashSet<>();
+        for (TodoItem todoItem : todoList) {
+            loadedIds.add(todoItem.getId());
+        }
+        // Live changes may already have inserted rows from this page
+        for (TodoItem todoItem : page) {
+            if (!loadedIds.contains(todoItem.getId())) {
+                todoList.add(todoItem);
+            }
+        }
+        submitTodos();
+    }
+
+    private void applyTodoChanges(TodoRepository.TodoChanges changes) {
+        Set<String> changedIds = new HashSet<>(changes.removedIds);
+        for (TodoItem todoItem : changes.upserted) {
+            changedIds.add(todoItem.getId());
+        }
+
+        Iterator<TodoItem> iterator = todoList.iterator();
+        while (iterator.hasNext()) {
+            if (changedIds.contains(iterator.next().getId())) {
+                iterator.remove();
+            }
+        }
+
+        // Keep the paging order; rows beyond the loaded pages arrive with their page
+        boolean rowsBeyondLoaded = false;
+        for (TodoItem todoItem : changes.upserted) {
+            if (todoPagingSource != null && !todoPagingSource.isLoaded(todoItem)) {
+                rowsBeyondLoaded = true;
+                continue;
+            }
+            int index = 0;
+            while (index < todoList.size() && TodoPagingSource.ORDER.compare(todoList.get(index), todoItem) < 0) {
+                index++;
+            }
+            todoList.add(index, todoItem);
+        }
+        submitTodos();
+        if (rowsBeyondLoaded) {
+            // They are in the local store now, so a short list can page them in
+            todoPagingSource.onRowsAdded();
+            todoRecyclerView.post(this::prefetchIfNeeded);
+        }
+    }
+
+    private void submitTodos() {
+        if (isPagedView()) {
+            showTodos(todoList);
+        } else {
+            // The change has already reached the local store, so the view picks it up
+            refreshView();
         }
     }
 
-    private void updateEmptyState() {
-        if (todoList.isEmpty()) {
+    private void showTodos(List<TodoItem> todos) {
+        // ListAdapter diffs on a background thread, so it must receive a snapshot it owns
+        todoAdapter.submitList(new ArrayList<>(todos));
+        updateEmptyState(todos.isEmpty());
+        updatePartialResultsHint();
+    }
+
+    // Search and the other views only see the local store; each backfilled page refreshes them as it lands
+    private void updatePartialResultsHint() {
+        FirebaseUser currentUser = FirebaseHelper.getCurrentUser();
+        boolean partial = currentUser != null && !isPagedView()
+                && !todoRepository.isBackfillComplete(currentUser.getUid());
+        partialResultsText.setVisibility(partial ? View.VISIBLE : View.GONE);
+    }
+
+    private void updateEmptyState(boolean empty) {
+        emptyStateText.setText(isPagedView() ? R.string.no_tasks : R.string.no_matching_tasks);
+        emptyStateHint.setVisibility(isPagedView() ? View.VISIBLE : View.GONE);
+        if (empty) {
             emptyStateLayout.setVisibility(View.VISIBLE);
             todoRecyclerView.setVisibility(View.GONE);
         } else {
@@ -132,22 +460,30 @@ public class TodoActivity extends AppCompatActivity implements TodoAdapter.OnTod
         }
     }
 
-    @RequiresPermission(Manifest.permission.POST_NOTIFICATIONS)
     private void checkPendingTasks() {
-        int pendingTasks = 0;
-        for (TodoItem item : todoList) {
-            if (!item.isCompleted()) {
-                pendingTasks++;
-            }
+        FirebaseUser currentUser = FirebaseHelper.getCurrentUser();
+        if (currentUser == null) {
+            return;
         }
+        // Only the loaded pages are in memory, so ask for the server-side count
+        todoRepository.getTodoSummary(currentUser.getUid(), task -> {
+            if (!task.isSuccessful() || task.getResult() == null) {
+                return;
+            }
+            int pendingTasks = (int) task.getResult().getPendingTasks();
+            if (pendingTasks > 0) {
+                showPendingTasksNotification(pendingTasks);
+            }
+        });
+    }
 
-        if (pendingTasks > 0) {
-            notificationService.showTodoNotification(
-                "Task Reminder",
-                "You have pending tasks to complete",
-                pendingTasks
-            );
-        }
+    @SuppressLint("MissingPermission")
+    private void showPendingTasksNotification(int pendingTasks) {
+        notificationService.showTodoNotification(
+            "Task Reminder",
+            "You have pending tasks to complete",
+            pendingTasks
+        );
     }
 
     private void showAddTaskDialog() {
@@ -183,52 +519,76 @@ public class TodoActivity extends AppCompatActivity implements TodoAdapter.OnTod
         dialog.show();
     }
 
-    private void addTask(String title, String description) {
-        showProgress(true);
+    // Mutations are shown immediately and only the affected row is reverted if the write fails
 
+    private void addTask(String title, String description) {
         FirebaseUser currentUser = FirebaseHelper.getCurrentUser();
         if (currentUser != null) {
             String todoId = java.util.UUID.randomUUID().toString();
             TodoItem todoItem = new TodoItem(todoId, title, description, currentUser.getUid());
 
-            FirebaseHelper.saveTodoItem(todoItem, task -> {
-                showProgress(false);
+            todoRepository.saveTodo(todoItem, task -> {
                 if (task.isSuccessful()) {
                     Toast.makeText(this, getString(R.string.task_added), Toast.LENGTH_SHORT).show();
-                    loadTodos();
                 } else {
+                    rollbackTask(todoId, null);
                     Toast.makeText(this, "Failed to add task", Toast.LENGTH_SHORT).show();
                 }
             });
+            showTaskLocally(todoItem);
         }
     }
 
-    private void updateTask(TodoItem todoItem) {
-        showProgress(true);
+    private void updateTaskStatus(TodoItem todoItem, boolean isCompleted) {
+        TodoItem updated = todoRepository.setTodoCompleted(todoItem, isCompleted,
+                task -> onTaskUpdated(task, todoItem));
+        showTaskLocally(updated);
+    }
 
-        FirebaseHelper.updateTodoItem(todoItem, task -> {
-            showProgress(false);
-            if (task.isSuccessful()) {
-                Toast.makeText(this, getString(R.string.task_updated), Toast.LENGTH_SHORT).show();
-                loadTodos();
-            } else {
-                Toast.makeText(this, "Failed to update task", Toast.LENGTH_SHORT).show();
-            }
-        });
+    private void updateTaskDetails(TodoItem todoItem, String title, String description) {
+        TodoItem updated = todoRepository.updateTodoDetails(todoItem, title, description,
+                task -> onTaskUpdated(task, todoItem));
+        showTaskLocally(updated);
     }
 
-    private void deleteTask(TodoItem todoItem) {
-        showProgress(true);
+    private void onTaskUpdated(Task<Void> task, TodoItem previous) {
+        if (task.isSuccessful()) {
+            Toast.makeText(this, getString(R.string.task_updated), Toast.LENGTH_SHORT).show();
+        } else {
+            rollbackTask(previous.getId(), previous);
+            Toast.makeText(this, "Failed to update task", Toast.LENGTH_SHORT).show();
+        }
+    }
 
-        FirebaseHelper.deleteTodoItem(todoItem.getId(), task -> {
-            showProgress(false);
+    private void deleteTask(TodoItem todoItem) {
+        todoRepository.deleteTodo(todoItem, task -> {
             if (task.isSuccessful()) {
                 Toast.makeText(this, getString(R.string.task_deleted), Toast.LENGTH_SHORT).show();
-                loadTodos();
             } else {
+                rollbackTask(todoItem.getId(), todoItem);
                 Toast.makeText(this, "Failed to delete task", Toast.LENGTH_SHORT).show();
             }
         });
+        TodoRepository.TodoChanges changes = new TodoRepository.TodoChanges();
+        changes.removedIds.add(todoItem.getId());
+        applyTodoChanges(changes);
+    }
+
+    private void showTaskLocally(TodoItem todoItem) {
+        TodoRepository.TodoChanges changes = new TodoRepository.TodoChanges();
+        changes.upserted.add(todoItem);
+        applyTodoChanges(changes);
+    }
+
+    // previous == null removes a row that was added optimistically
+    private void rollbackTask(String todoId, TodoItem previous) {
+        TodoRepository.TodoChanges changes = new TodoRepository.TodoChanges();
+        if (previous != null) {
+            changes.upserted.add(previous);
+        } else {
+            changes.removedIds.add(todoId);
+        }
+        applyTodoChanges(changes);
     }
 
     private void showProgress(boolean show) {
@@ -259,8 +619,7 @@ public class TodoActivity extends AppCompatActivity implements TodoAdapter.OnTod
 
     @Override
     public void onTodoStatusChanged(TodoItem todoItem, boolean isCompleted) {
-        todoItem.setCompleted(isCompleted);
-        updateTask(todoItem);
+        updateTaskStatus(todoItem, isCompleted);
     }
 
     private void showEditTaskDialog(TodoItem todoItem) {
@@ -292,9 +651,7 @@ public class TodoActivity extends AppCompatActivity implements TodoAdapter.OnTod
                 return;
             }
 
-            todoItem.setTitle(title);
-            todoItem.setDescription(description);
-            updateTask(todoItem);
+            updateTaskDetails(todoItem, title, description);
             dialog.dismiss();
         });
 
@@ -0,0 +1,115 @@
+package com.sitani.adapters;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.sitani.R;
+import com.sitani.models.FarmField;
+import com.sitani.models.WeatherResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+public class FieldWeatherAdapter extends RecyclerView.Adapter<FieldWeatherAdapter.FieldWeatherViewHolder> {
+
+    private static class FieldWeather {
+        final FarmField field;
+        WeatherResponse weather;
+        boolean failed;
+
+        FieldWeather(FarmField field) {
+            this.field = field;
+        }
+    }
+
+    private final List<FieldWeather> rows = new ArrayList<>();
+
+    public void setFields(List<FarmField> fields) {
+        rows.clear();
+        for (FarmField field : fields) {
+            rows.add(new FieldWeather(field));
+        }
+        notifyDataSetChanged();
+    }
+
+    public void setWeather(FarmField field, WeatherResponse weather) {
+        int position = indexOf(field);
+        if (position != RecyclerView.NO_POSITION) {
+            rows.get(position).weather = weather;
+            rows.get(position).failed = false;
+            notifyItemChanged(position);
+        }
+    }
+
+    public void setError(FarmField field) {
+        int position = indexOf(field);
+        if (position != RecyclerView.NO_POSITION && rows.get(position).weather == null) {
+            rows.get(position).failed = true;
+            notifyItemChanged(position);
+        }
+    }
+
+    private int indexOf(FarmField field) {
+        for (int i = 0; i < rows.size(); i++) {
+            if (rows.get(i).field == field) {
+                return i;
+            }
+        }
+        return RecyclerView.NO_POSITION;
+    }
+
+    @NonNull
+    @Override
+    public FieldWeatherViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_field_weather, parent, false);
+        return new FieldWeatherViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull FieldWeatherViewHolder holder, int position) {
+        holder.bind(rows.get(position));
+    }
+
+    @Override
+    public int getItemCount() {
+        return rows.size();
+    }
+
+    static class FieldWeatherViewHolder extends RecyclerView.ViewHolder {
+        private TextView fieldNameTextView;
+        private TextView fieldTemperatureTextView;
+        private TextView fieldDescriptionTextView;
+
+        public FieldWeatherViewHolder(@NonNull View itemView) {
+            super(itemView);
+            fieldNameTextView = itemView.findViewById(R.id.fieldNameTextView);
+            fieldTemperatureTextView = itemView.findViewById(R.id.fieldTemperatureTextView);
+            fieldDescriptionTextView = itemView.findViewById(R.id.fieldDescriptionTextView);
+        }
+
+        void bind(FieldWeather row) {
+            fieldNameTextView.setText(row.field.getName());
+
+            WeatherResponse weather = row.weather;
+            if (weather == null) {
+                fieldTemperatureTextView.setText("--");
+                fieldDescriptionTextView.setText(row.failed
+                        ? R.string.field_weather_unavailable : R.string.field_weather_loading);
+                return;
+            }
+
+            if (weather.getMain() != null) {
+                fieldTemperatureTextView.setText(String.format(Locale.getDefault(), "%.1f°C", weather.getMain().getTemp()));
+            }
+            if (weather.getWeather() != null && weather.getWeather().length > 0) {
+                fieldDescriptionTextView.setText(weather.getWeather()[0].getDescription());
+            }
+        }
+    }
+}
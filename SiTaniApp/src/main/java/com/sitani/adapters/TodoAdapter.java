@@ -8,19 +8,34 @@ import android.widget.ImageButton;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.core.util.ObjectsCompat;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.sitani.R;
 import com.sitani.models.TodoItem;
 
-import java.util.ArrayList;
-import java.util.List;
+public class TodoAdapter extends ListAdapter<TodoItem, TodoAdapter.TodoViewHolder> {
 
-public class TodoAdapter extends RecyclerView.Adapter<TodoAdapter.TodoViewHolder> {
-
-    private List<TodoItem> todoItems;
     private OnTodoClickListener listener;
 
+    // Items are never mutated in place once submitted, so contents can be compared field by field
+    private static final DiffUtil.ItemCallback<TodoItem> DIFF_CALLBACK = new DiffUtil.ItemCallback<TodoItem>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull TodoItem oldItem, @NonNull TodoItem newItem) {
+            return oldItem.getId().equals(newItem.getId());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull TodoItem oldItem, @NonNull TodoItem newItem) {
+            return oldItem.isCompleted() == newItem.isCompleted()
+                    && oldItem.getUpdatedAt() == newItem.getUpdatedAt()
+                    && ObjectsCompat.equals(oldItem.getTitle(), newItem.getTitle())
+                    && ObjectsCompat.equals(oldItem.getDescription(), newItem.getDescription());
+        }
+    };
+
     public interface OnTodoClickListener {
         void onTodoClick(TodoItem todoItem);
         void onTodoEdit(TodoItem todoItem);
@@ -29,15 +44,10 @@ public class TodoAdapter extends RecyclerView.Adapter<TodoAdapter.TodoViewHolder
     }
 
     public TodoAdapter(OnTodoClickListener listener) {
-        this.todoItems = new ArrayList<>();
+        super(DIFF_CALLBACK);
         this.listener = listener;
     }
 
-    public void setTodoItems(List<TodoItem> todoItems) {
-        this.todoItems = todoItems;
-        notifyDataSetChanged();
-    }
-
     @NonNull
     @Override
     public TodoViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
@@ -47,15 +57,10 @@ public class TodoAdapter extends RecyclerView.Adapter<TodoAdapter.TodoViewHolder
 
     @Override
     public void onBindViewHolder(@NonNull TodoViewHolder holder, int position) {
-        TodoItem todoItem = todoItems.get(position);
+        TodoItem todoItem = getItem(position);
         holder.bind(todoItem);
     }
 
-    @Override
-    public int getItemCount() {
-        return todoItems.size();
-    }
-
     class TodoViewHolder extends RecyclerView.ViewHolder {
         private CheckBox taskCheckBox;
         private TextView titleTextView;
@@ -72,14 +77,16 @@ public class TodoAdapter extends RecyclerView.Adapter<TodoAdapter.TodoViewHolder
             deleteButton = itemView.findViewById(R.id.deleteButton);
 
             itemView.setOnClickListener(v -> {
-                int position = getAdapterPosition();
+                int position = getBindingAdapterPosition();
                 if (position != RecyclerView.NO_POSITION && listener != null) {
-                    listener.onTodoClick(todoItems.get(position));
+                    listener.onTodoClick(getItem(position));
                 }
             });
         }
 
         public void bind(TodoItem todoItem) {
+            // Detach the previous row's listener so rebinding does not report a status change
+            taskCheckBox.setOnCheckedChangeListener(null);
             taskCheckBox.setChecked(todoItem.isCompleted());
             titleTextView.setText(todoItem.getTitle());
             descriptionTextView.setText(todoItem.getDescription());
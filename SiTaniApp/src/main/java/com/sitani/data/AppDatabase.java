@@ -0,0 +1,30 @@
+package com.sitani.data;
+
+import android.content.Context;
+
+import androidx.room.Database;
+import androidx.room.Room;
+import androidx.room.RoomDatabase;
+
+import com.sitani.models.TodoItem;
+import com.sitani.utils.Constants;
+
+@Database(entities = {TodoItem.class}, version = 1, exportSchema = false)
+public abstract class AppDatabase extends RoomDatabase {
+    private static volatile AppDatabase instance;
+
+    public abstract TodoDao todoDao();
+
+    public static AppDatabase getInstance(Context context) {
+        if (instance == null) {
+            synchronized (AppDatabase.class) {
+                if (instance == null) {
+                    instance = Room.databaseBuilder(context.getApplicationContext(),
+                            AppDatabase.class, Constants.DATABASE_NAME)
+                            .build();
+                }
+            }
+        }
+        return instance;
+    }
+}
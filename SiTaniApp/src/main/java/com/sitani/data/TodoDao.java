@@ -0,0 +1,41 @@
+package com.sitani.data;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import com.sitani.models.TodoItem;
+
+import java.util.List;
+
+@Dao
+public interface TodoDao {
+    @Query("SELECT * FROM todos WHERE userId = :userId AND deleted = 0 ORDER BY createdAt DESC")
+    List<TodoItem> getTodos(String userId);
+
+    // Keyset page ordered by (createdAt, id) DESC, strictly after the "after" key
+    @Query("SELECT * FROM todos WHERE userId = :userId AND deleted = 0"
+            + " AND (createdAt < :afterCreatedAt OR (createdAt = :afterCreatedAt AND id < :afterId))"
+            + " ORDER BY createdAt DESC, id DESC LIMIT :limit")
+    List<TodoItem> getTodosPage(String userId, long afterCreatedAt, String afterId, int limit);
+
+    @Query("SELECT * FROM todos WHERE id IN (:ids) AND deleted = 0")
+    List<TodoItem> getTodosByIds(List<String> ids);
+
+    // Tombstones included, so a sync can tell a deleted todo from one it has never seen
+    @Query("SELECT * FROM todos WHERE id IN (:ids)")
+    List<TodoItem> getStoredTodos(List<String> ids);
+
+    @Query("SELECT COUNT(*) FROM todos WHERE userId = :userId AND deleted = 0")
+    int countTodos(String userId);
+
+    @Query("SELECT COUNT(*) FROM todos WHERE userId = :userId AND deleted = 0 AND completed = 0")
+    int countPendingTodos(String userId);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void upsert(TodoItem todoItem);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void upsertAll(List<TodoItem> todoItems);
+}
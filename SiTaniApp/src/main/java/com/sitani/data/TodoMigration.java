@@ -0,0 +1,69 @@
+package com.sitani.data;
+
+import android.content.SharedPreferences;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.sitani.utils.Constants;
+import com.sitani.utils.FirebaseHelper;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Moves a user's todos from the old top-level collection to users/{uid}/todos. Each batch
+ * copies and deletes its documents atomically, so an interrupted run simply resumes with
+ * whatever is still left in the old collection. Once it comes back empty the user is marked
+ * as migrated and the old collection is not queried again.
+ *
+ * Not thread-safe: call from the main thread.
+ */
+class TodoMigration {
+    // Every document is one set plus one delete, and a batch takes 500 operations
+    static final int BATCH_SIZE = 200;
+
+    private final SharedPreferences prefs;
+    private final Map<String, Task<Void>> running = new HashMap<>();
+
+    TodoMigration(SharedPreferences prefs) {
+        this.prefs = prefs;
+    }
+
+    boolean isComplete(String userId) {
+        return prefs.getBoolean(Constants.KEY_TODO_MIGRATION_COMPLETE + userId, false);
+    }
+
+    Task<Void> migrate(String userId) {
+        if (isComplete(userId)) {
+            return Tasks.forResult(null);
+        }
+        Task<Void> migration = running.get(userId);
+        if (migration == null) {
+            migration = migrateNextBatch(userId);
+            running.put(userId, migration);
+            migration.addOnCompleteListener(task -> running.remove(userId));
+        }
+        return migration;
+    }
+
+    private Task<Void> migrateNextBatch(String userId) {
+        return FirebaseHelper.getLegacyTodos(userId, BATCH_SIZE).continueWithTask(task -> {
+            if (!task.isSuccessful()) {
+                throw task.getException();
+            }
+            List<DocumentSnapshot> documents = task.getResult().getDocuments();
+            if (documents.isEmpty()) {
+                prefs.edit().putBoolean(Constants.KEY_TODO_MIGRATION_COMPLETE + userId, true).apply();
+                return Tasks.forResult(null);
+            }
+            return FirebaseHelper.moveLegacyTodos(userId, documents).continueWithTask(moved -> {
+                if (!moved.isSuccessful()) {
+                    throw moved.getException();
+                }
+                return migrateNextBatch(userId);
+            });
+        });
+    }
+}
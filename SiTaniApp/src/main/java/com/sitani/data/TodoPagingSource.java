@@ -0,0 +1,110 @@
+package com.sitani.data;
+
+import com.google.android.gms.tasks.OnCompleteListener;
+import com.sitani.models.TodoItem;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Loads a user's todos one page at a time in (createdAt, id) DESC order. Pages are always read
+ * from the local store, so showing the list never waits on Firestore. History that is not stored
+ * yet is downloaded in the background by {@link TodoRepository#backfillTodos}; rows it stores
+ * past the loaded range are picked up by the next page once {@link #onRowsAdded} is called.
+ *
+ * Not thread-safe: call from the main thread, where all callbacks are delivered.
+ */
+public class TodoPagingSource {
+    public static final int PAGE_SIZE = 30;
+
+    // Display order shared with the DAO and Firestore page queries: newest first, ties by id
+    public static final Comparator<TodoItem> ORDER = TodoViews.Sort.NEWEST.comparator();
+
+    private final TodoRepository repository;
+    private final String userId;
+
+    private long lastCreatedAt;
+    private String lastId;
+    private boolean loading;
+    private boolean endReached;
+    // The last page came back short while the backfill was still running
+    private boolean caughtUp;
+    private int generation;
+
+    TodoPagingSource(TodoRepository repository, String userId) {
+        this.repository = repository;
+        this.userId = userId;
+        reset();
+    }
+
+    public void reset() {
+        generation++;
+        lastCreatedAt = Long.MAX_VALUE;
+        lastId = "";
+        loading = false;
+        endReached = false;
+        caughtUp = false;
+    }
+
+    public boolean isLoading() {
+        return loading;
+    }
+
+    public boolean isEndReached() {
+        return endReached;
+    }
+
+    // Whether another page may have rows to give right now
+    public boolean canLoadMore() {
+        return !loading && !endReached && !caughtUp;
+    }
+
+    // Whether the item falls inside the range already handed out, so a live change may be shown
+    public boolean isLoaded(TodoItem todoItem) {
+        if (endReached) {
+            return true;
+        }
+        if (todoItem.getCreatedAt() != lastCreatedAt) {
+            return todoItem.getCreatedAt() > lastCreatedAt;
+        }
+        return todoItem.getId().compareTo(lastId) >= 0;
+    }
+
+    /**
+     * Tells the source that rows outside the loaded range were stored, for instance by the
+     * backfill or a new todo while nothing has loaded yet, so a short last page is not final.
+     */
+    public void onRowsAdded() {
+        caughtUp = false;
+    }
+
+    public void loadNextPage(OnCompleteListener<List<TodoItem>> onCompleteListener) {
+        if (!canLoadMore()) {
+            return;
+        }
+        loading = true;
+        int requestGeneration = generation;
+        // Read before the page, so a backfill finishing in between never ends the list early
+        boolean backfilled = repository.isBackfillComplete(userId);
+
+        repository.loadLocalPage(userId, lastCreatedAt, lastId, PAGE_SIZE).addOnCompleteListener(task -> {
+            if (requestGeneration != generation) {
+                return;
+            }
+            loading = false;
+            if (task.isSuccessful()) {
+                List<TodoItem> page = task.getResult();
+                if (!page.isEmpty()) {
+                    TodoItem last = page.get(page.size() - 1);
+                    lastCreatedAt = last.getCreatedAt();
+                    lastId = last.getId();
+                }
+                if (page.size() < PAGE_SIZE) {
+                    endReached = backfilled;
+                    caughtUp = !backfilled;
+                }
+            }
+            onCompleteListener.onComplete(task);
+        });
+    }
+}
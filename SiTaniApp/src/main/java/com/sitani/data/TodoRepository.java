@@ -0,0 +1,709 @@
+package com.sitani.data;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.google.android.gms.tasks.OnCompleteListener;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.sitani.models.TodoItem;
+import com.sitani.models.TodoSummary;
+import com.sitani.utils.Constants;
+import com.sitani.utils.FirebaseHelper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Local-first todo store. Reads are served from the Room database, mutations are
+ * written locally and to Firestore, and {@link #syncTodos} only pulls documents whose
+ * server-assigned updatedAt is at or after the last watermark seen for the user.
+ */
+public class TodoRepository {
+    private static final String TAG = "TodoRepository";
+    // Room on API 24 allows 999 bound arguments per statement
+    private static final int MAX_IDS_PER_QUERY = 500;
+    private static final int BACKFILL_PAGE_SIZE = 100;
+
+    private static volatile TodoRepository instance;
+
+    public interface OnTodoChangesListener {
+        void onTodoChanges(TodoChanges changes);
+        void onError(Exception e);
+    }
+
+    public static class TodoChanges {
+        public final List<TodoItem> upserted = new ArrayList<>();
+        public final List<String> removedIds = new ArrayList<>();
+        // Remote tombstones behind removedIds, kept in the store so older copies cannot bring them back
+        final List<TodoItem> tombstones = new ArrayList<>();
+
+        public boolean isEmpty() {
+            return upserted.isEmpty() && removedIds.isEmpty();
+        }
+    }
+
+    private final TodoDao todoDao;
+    private final SharedPreferences prefs;
+    // Single thread keeps local writes ordered before the reads that follow them
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final TodoWriteQueue writeQueue = new TodoWriteQueue();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final TodoMigration migration;
+    private final File searchIndexDir;
+    // Main thread only
+    private final Map<String, Task<Void>> backfills = new HashMap<>();
+    private final List<OnTodoChangesListener> backfillListeners = new ArrayList<>();
+
+    // Search index state is only touched on the executor
+    private TodoSearchIndex searchIndex;
+    private boolean searchIndexDirty;
+    private boolean searchIndexSaveScheduled;
+    // Executor only; built on first use from the local store
+    private TodoViews todoViews;
+
+    private TodoRepository(Context context) {
+        todoDao = AppDatabase.getInstance(context).todoDao();
+        prefs = context.getSharedPreferences(Constants.PREFS_NAME, Context.MODE_PRIVATE);
+        migration = new TodoMigration(prefs);
+        searchIndexDir = new File(context.getFilesDir(), Constants.SEARCH_INDEX_DIR);
+    }
+
+    public static TodoRepository getInstance(Context context) {
+        if (instance == null) {
+            synchronized (TodoRepository.class) {
+                if (instance == null) {
+                    instance = new TodoRepository(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Moves the user's todos out of the old shared collection if that has not finished yet.
+     * Remote reads only see migrated todos, so callers load after this completes. A failed run
+     * is retried on the next call.
+     */
+    public void migrateTodos(String userId, OnCompleteListener<Void> onCompleteListener) {
+        migration.migrate(userId).addOnCompleteListener(onCompleteListener);
+    }
+
+    /**
+     * Counts the user's tasks with the server-side aggregation, or from the local store when
+     * the server cannot be reached. Local counts only cover the todos synced or backfilled so far.
+     */
+    public void getTodoSummary(String userId, OnCompleteListener<TodoSummary> onCompleteListener) {
+        TaskCompletionSource<TodoSummary> summary = new TaskCompletionSource<>();
+        FirebaseHelper.getTodoSummary(userId, task -> {
+            if (task.isSuccessful()) {
+                summary.setResult(task.getResult());
+                return;
+            }
+            runInBackground(() -> new TodoSummary(todoDao.countTodos(userId), todoDao.countPendingTodos(userId)))
+                    .addOnCompleteListener(local -> {
+                        if (local.isSuccessful()) {
+                            summary.setResult(local.getResult());
+                        } else {
+                            summary.setException(task.getException());
+                        }
+                    });
+        });
+        summary.getTask().addOnCompleteListener(onCompleteListener);
+    }
+
+    public void getTodos(String userId, OnCompleteListener<List<TodoItem>> onCompleteListener) {
+        runInBackground(() -> todoDao.getTodos(userId))
+                .addOnCompleteListener(onCompleteListener);
+    }
+
+    /**
+     * Todos whose title or description has a word starting with each term of the query, narrowed
+     * to the filter and in the given order. Answered from the on-device index and the local
+     * store, never from Firestore, so results are partial until {@link #backfillTodos} has
+     * completed; each page it stores is indexed as it lands.
+     */
+    public void searchTodos(String userId, String query, TodoViews.Filter filter, TodoViews.Sort sort,
+                            OnCompleteListener<List<TodoItem>> onCompleteListener) {
+        runInBackground(() -> {
+            List<String> ids = searchIndex(userId).search(query);
+            long dayStart = startOfToday();
+            List<TodoItem> results = new ArrayList<>(ids.size());
+            for (int start = 0; start < ids.size(); start += MAX_IDS_PER_QUERY) {
+                List<String> chunk = ids.subList(start, Math.min(start + MAX_IDS_PER_QUERY, ids.size()));
+                for (TodoItem todoItem : todoDao.getTodosByIds(chunk)) {
+                    if (filter.matches(todoItem, dayStart)) {
+                        results.add(todoItem);
+                    }
+                }
+            }
+            Collections.sort(results, sort.comparator());
+            return results;
+        }).addOnCompleteListener(onCompleteListener);
+    }
+
+    /**
+     * All of the user's local todos that pass the filter, in the given order. Views are kept up
+     * to date as todos change, so asking again, or for a view asked for before, costs a copy.
+     * Like search, they are partial until {@link #backfillTodos} has completed, and pick up each
+     * page it stores.
+     */
+    public void getTodoView(String userId, TodoViews.Filter filter, TodoViews.Sort sort,
+                            OnCompleteListener<List<TodoItem>> onCompleteListener) {
+        runInBackground(() -> {
+            TodoViews views = todoViews(userId);
+            views.setDayStart(startOfToday());
+            return views.get(filter, sort);
+        }).addOnCompleteListener(onCompleteListener);
+    }
+
+    // The snapshot is read and stored on the executor; only the resulting changes reach the main thread
+    public void syncTodos(String userId, OnCompleteListener<TodoChanges> onCompleteListener) {
+        TaskCompletionSource<TodoChanges> sync = new TaskCompletionSource<>();
+        ensureSyncWatermark(userId, ready -> {
+            if (!ready.isSuccessful()) {
+                sync.setException(ready.getException());
+                return;
+            }
+            FirebaseHelper.getUserTodosUpdatedSince(userId, getWatermark(userId), executor, task -> {
+                if (!task.isSuccessful() || task.getResult() == null) {
+                    sync.setException(task.getException() != null
+                            ? task.getException() : new IllegalStateException("Empty todo snapshot"));
+                    return;
+                }
+                try {
+                    sync.setResult(applyRemoteChanges(userId, task.getResult().getDocuments()));
+                } catch (Exception e) {
+                    sync.setException(e);
+                }
+            });
+        });
+        sync.getTask().addOnCompleteListener(onCompleteListener);
+    }
+
+    /**
+     * Starts the change watermark at the newest server-assigned updatedAt on first use, so it
+     * never depends on the device clock. History from before that point is downloaded page by
+     * page by {@link #backfillTodos} instead of being streamed all at once by the change
+     * listener. Changes are not listened for until this has completed.
+     */
+    public void ensureSyncWatermark(String userId, OnCompleteListener<Void> onCompleteListener) {
+        if (prefs.contains(Constants.KEY_TODO_SYNC_WATERMARK + userId)) {
+            Tasks.<Void>forResult(null).addOnCompleteListener(onCompleteListener);
+            return;
+        }
+        TaskCompletionSource<Void> watermark = new TaskCompletionSource<>();
+        FirebaseHelper.getLatestTodoUpdate(userId, executor, task -> {
+            if (!task.isSuccessful() || task.getResult() == null) {
+                watermark.setException(task.getException() != null
+                        ? task.getException() : new IllegalStateException("Empty todo snapshot"));
+                return;
+            }
+            List<DocumentSnapshot> documents = task.getResult().getDocuments();
+            TodoItem latest = documents.isEmpty() ? null : FirebaseHelper.toTodoItem(documents.get(0));
+            // No server-stamped todo yet means every later one is new
+            long start = latest != null ? latest.getUpdatedAt() : 0L;
+            prefs.edit().putLong(Constants.KEY_TODO_SYNC_WATERMARK + userId, start).apply();
+            watermark.setResult(null);
+        });
+        watermark.getTask().addOnCompleteListener(onCompleteListener);
+    }
+
+    public TodoPagingSource createPagingSource(String userId) {
+        return new TodoPagingSource(this, userId);
+    }
+
+    /**
+     * Streams documents changed since the current watermark, which must have been set up with
+     * {@link #ensureSyncWatermark} first. The registration is scoped to the activity and
+     * detached in its onStop, so callers re-attach from onStart.
+     */
+    public ListenerRegistration listenForChanges(Activity activity, String userId, OnTodoChangesListener listener) {
+        return FirebaseHelper.listenToUserTodoChanges(activity, userId, getWatermark(userId), executor,
+                (snapshot, error) -> {
+                    if (error != null) {
+                        mainHandler.post(() -> listener.onError(error));
+                        return;
+                    }
+                    if (snapshot == null || snapshot.getDocumentChanges().isEmpty()) {
+                        return;
+                    }
+                    TodoChanges changes;
+                    try {
+                        changes = applyDocumentChanges(userId, snapshot.getDocumentChanges());
+                    } catch (Exception e) {
+                        mainHandler.post(() -> listener.onError(e));
+                        return;
+                    }
+                    if (!changes.isEmpty()) {
+                        mainHandler.post(() -> listener.onTodoChanges(changes));
+                    }
+                });
+    }
+
+    /*
+     * Mutations apply to the local store at once and return the item as it should now be shown.
+     * If the remote write fails the local row is restored before the listener is told. The
+     * updatedAt set here only orders the local copy; the server stamps its own time on the write,
+     * and the change listener brings that back.
+     */
+
+    public void saveTodo(TodoItem todoItem, OnCompleteListener<Void> onCompleteListener) {
+        FirebaseHelper.invalidateTodoSummary();
+        todoItem.setUpdatedAt(System.currentTimeMillis());
+        executor.execute(() -> upsertLocal(todoItem));
+        writeQueue.enqueueSet(todoItem, rollbackOnFailure(todoItem, null, onCompleteListener));
+    }
+
+    // Status and detail edits send only their own fields, so a checkbox toggle does not rewrite the document
+    public TodoItem setTodoCompleted(TodoItem todoItem, boolean completed, OnCompleteListener<Void> onCompleteListener) {
+        FirebaseHelper.invalidateTodoSummary();
+        TodoItem updated = new TodoItem(todoItem);
+        updated.setCompleted(completed);
+        updated.setUpdatedAt(System.currentTimeMillis());
+        executor.execute(() -> upsertLocal(updated));
+
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("completed", completed);
+        writeQueue.enqueueUpdate(updated.getUserId(), updated.getId(), fields, rollbackOnFailure(updated, todoItem, onCompleteListener));
+        return updated;
+    }
+
+    public TodoItem updateTodoDetails(TodoItem todoItem, String title, String description,
+                                  OnCompleteListener<Void> onCompleteListener) {
+        TodoItem updated = new TodoItem(todoItem);
+        updated.setTitle(title);
+        updated.setDescription(description);
+        updated.setUpdatedAt(System.currentTimeMillis());
+        executor.execute(() -> upsertLocal(updated));
+
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("title", title);
+        fields.put("description", description);
+        writeQueue.enqueueUpdate(updated.getUserId(), updated.getId(), fields, rollbackOnFailure(updated, todoItem, onCompleteListener));
+        return updated;
+    }
+
+    public void deleteTodo(TodoItem todoItem, OnCompleteListener<Void> onCompleteListener) {
+        FirebaseHelper.invalidateTodoSummary();
+        String todoId = todoItem.getId();
+        TodoItem tombstone = new TodoItem(todoItem);
+        tombstone.setUpdatedAt(System.currentTimeMillis());
+        executor.execute(() -> deleteLocal(tombstone));
+
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("deleted", true);
+        // Tombstones are also marked completed so the pending count needs no extra query
+        fields.put("completed", true);
+        writeQueue.enqueueUpdate(todoItem.getUserId(), todoId, fields, rollbackOnFailure(todoItem, todoItem, onCompleteListener));
+    }
+
+    // previous == null means the todo did not exist before the write
+    private OnCompleteListener<Void> rollbackOnFailure(TodoItem written, TodoItem previous,
+                                                       OnCompleteListener<Void> onCompleteListener) {
+        return task -> {
+            if (!task.isSuccessful()) {
+                executor.execute(() -> {
+                    if (previous != null) {
+                        upsertLocal(previous);
+                    } else {
+                        deleteLocal(written);
+                    }
+                });
+            }
+            onCompleteListener.onComplete(task);
+        };
+    }
+
+    public boolean isBackfillComplete(String userId) {
+        return prefs.getBoolean(Constants.KEY_TODO_BACKFILL_COMPLETE + userId, false);
+    }
+
+    /**
+     * Downloads the user's history from Firestore into the local store in the background, one
+     * page at a time in (createdAt, id) DESC order. The position after each stored page is
+     * saved, so an interrupted run resumes instead of starting over; a failed run is retried on
+     * the next call. Runs after {@link #migrateTodos}, which it starts if needed. Stored pages are
+     * reported to the backfill listeners.
+     *
+     * Must be called on the main thread, where the listeners are called as well.
+     */
+    public Task<Void> backfillTodos(String userId) {
+        if (isBackfillComplete(userId)) {
+            return Tasks.forResult(null);
+        }
+        Task<Void> backfill = backfills.get(userId);
+        if (backfill == null) {
+            TaskCompletionSource<Void> source = new TaskCompletionSource<>();
+            backfill = source.getTask();
+            backfills.put(userId, backfill);
+            backfill.addOnCompleteListener(task -> backfills.remove(userId));
+            // A backfill that has already passed a todo would miss it if it were migrated later
+            migration.migrate(userId).addOnCompleteListener(migrated -> {
+                if (migrated.isSuccessful()) {
+                    backfillNextPage(userId, source);
+                } else {
+                    source.setException(migrated.getException());
+                }
+            });
+        }
+        return backfill;
+    }
+
+    public void addBackfillListener(OnTodoChangesListener listener) {
+        backfillListeners.add(listener);
+    }
+
+    public void removeBackfillListener(OnTodoChangesListener listener) {
+        backfillListeners.remove(listener);
+    }
+
+    private void backfillNextPage(String userId, TaskCompletionSource<Void> backfill) {
+        String afterId = prefs.getString(Constants.KEY_TODO_BACKFILL_CURSOR_ID + userId, null);
+        long afterCreatedAt = prefs.getLong(Constants.KEY_TODO_BACKFILL_CURSOR_CREATED_AT + userId, 0L);
+        FirebaseHelper.getUserTodosPage(userId, afterCreatedAt, afterId, BACKFILL_PAGE_SIZE, executor, task -> {
+            if (!task.isSuccessful() || task.getResult() == null) {
+                backfill.setException(task.getException() != null
+                        ? task.getException() : new IllegalStateException("Empty todo page"));
+                return;
+            }
+            List<DocumentSnapshot> documents = task.getResult().getDocuments();
+            TodoChanges changes;
+            try {
+                changes = storeBackfillPage(userId, documents);
+            } catch (Exception e) {
+                backfill.setException(e);
+                return;
+            }
+            if (!changes.isEmpty()) {
+                mainHandler.post(() -> {
+                    for (OnTodoChangesListener listener : new ArrayList<>(backfillListeners)) {
+                        listener.onTodoChanges(changes);
+                    }
+                });
+            }
+            if (documents.size() < BACKFILL_PAGE_SIZE) {
+                backfill.setResult(null);
+            } else {
+                backfillNextPage(userId, backfill);
+            }
+        });
+    }
+
+    /*
+     * A page may be read before a listener change or a local write to one of its todos is
+     * stored. That change is already behind the watermark, so the page must not replace it with
+     * the older server copy. Executor only; package-private for tests.
+     */
+    TodoChanges storeBackfillPage(String userId, List<DocumentSnapshot> documents) {
+        List<TodoItem> todoItems = new ArrayList<>(documents.size());
+        List<String> ids = new ArrayList<>(documents.size());
+        for (DocumentSnapshot document : documents) {
+            TodoItem todoItem = FirebaseHelper.toTodoItem(document);
+            if (todoItem != null) {
+                todoItems.add(todoItem);
+                ids.add(todoItem.getId());
+            }
+        }
+        Map<String, TodoItem> stored = new HashMap<>();
+        for (TodoItem todoItem : todoDao.getStoredTodos(ids)) {
+            stored.put(todoItem.getId(), todoItem);
+        }
+
+        TodoChanges changes = new TodoChanges();
+        for (TodoItem todoItem : todoItems) {
+            TodoItem current = stored.get(todoItem.getId());
+            if (current == null ? todoItem.isDeleted() : current.getUpdatedAt() >= todoItem.getUpdatedAt()) {
+                continue;
+            }
+            addChange(todoItem, changes);
+        }
+        // Backfilled pages are older than the watermark, so it is left untouched
+        commitChanges(userId, changes, getWatermark(userId));
+
+        SharedPreferences.Editor editor = prefs.edit();
+        if (documents.size() < BACKFILL_PAGE_SIZE) {
+            editor.putBoolean(Constants.KEY_TODO_BACKFILL_COMPLETE + userId, true);
+        } else {
+            DocumentSnapshot last = documents.get(documents.size() - 1);
+            Long createdAt = last.getLong("createdAt");
+            editor.putLong(Constants.KEY_TODO_BACKFILL_CURSOR_CREATED_AT + userId, createdAt != null ? createdAt : 0L)
+                    .putString(Constants.KEY_TODO_BACKFILL_CURSOR_ID + userId, last.getId());
+        }
+        editor.apply();
+        return changes;
+    }
+
+    Task<List<TodoItem>> loadLocalPage(String userId, long afterCreatedAt, String afterId, int limit) {
+        return runInBackground(() -> todoDao.getTodosPage(userId, afterCreatedAt, afterId, limit));
+    }
+
+    private TodoChanges applyRemoteChanges(String userId, List<DocumentSnapshot> documents) {
+        TodoChanges changes = new TodoChanges();
+        long watermark = getWatermark(userId);
+        for (DocumentSnapshot document : documents) {
+            watermark = applyDocument(document, changes, watermark);
+        }
+        commitChanges(userId, changes, watermark);
+        return changes;
+    }
+
+    private TodoChanges applyDocumentChanges(String userId, List<DocumentChange> documentChanges) {
+        TodoChanges changes = new TodoChanges();
+        long watermark = getWatermark(userId);
+        for (DocumentChange documentChange : documentChanges) {
+            // REMOVED only means the document left the updatedAt range, e.g. when a rejected
+            // local write is reverted. Deletes arrive as tombstones, so there is nothing to drop.
+            if (documentChange.getType() != DocumentChange.Type.REMOVED) {
+                watermark = applyDocument(documentChange.getDocument(), changes, watermark);
+            }
+        }
+        commitChanges(userId, changes, watermark);
+        return changes;
+    }
+
+    private long applyDocument(DocumentSnapshot document, TodoChanges changes, long watermark) {
+        TodoItem todoItem = FirebaseHelper.toTodoItem(document);
+        if (todoItem == null || isStored(todoItem, watermark)) {
+            return watermark;
+        }
+        addChange(todoItem, changes);
+        // Local writes are not advanced past until the server has stamped them
+        if (document.getMetadata().hasPendingWrites()) {
+            return watermark;
+        }
+        return Math.max(watermark, todoItem.getUpdatedAt());
+    }
+
+    private static void addChange(TodoItem todoItem, TodoChanges changes) {
+        if (todoItem.isDeleted()) {
+            changes.removedIds.add(todoItem.getId());
+            changes.tombstones.add(todoItem);
+        } else {
+            changes.upserted.add(todoItem);
+        }
+    }
+
+    // The change queries include the watermark's own millisecond, so writes seen last time come back once more
+    private boolean isStored(TodoItem todoItem, long watermark) {
+        if (todoItem.getUpdatedAt() > watermark) {
+            return false;
+        }
+        List<TodoItem> stored = todoDao.getStoredTodos(Collections.singletonList(todoItem.getId()));
+        if (stored.isEmpty()) {
+            return todoItem.isDeleted();
+        }
+        return stored.get(0).getUpdatedAt() == todoItem.getUpdatedAt();
+    }
+
+    private void commitChanges(String userId, TodoChanges changes, long watermark) {
+        TodoSearchIndex index = searchIndex(userId);
+        TodoViews views = loadedTodoViews(userId);
+        markSearchIndexStale(userId);
+        todoDao.upsertAll(changes.tombstones);
+        for (String todoId : changes.removedIds) {
+            index.remove(todoId);
+            if (views != null) {
+                views.remove(todoId);
+            }
+        }
+        todoDao.upsertAll(changes.upserted);
+        for (TodoItem todoItem : changes.upserted) {
+            index.put(todoItem);
+            if (views != null) {
+                views.put(todoItem);
+            }
+        }
+        scheduleSearchIndexSave();
+        // Pages stored before the watermark is first set must not set it to 0 themselves
+        if (watermark != getWatermark(userId)) {
+            prefs.edit().putLong(Constants.KEY_TODO_SYNC_WATERMARK + userId, watermark).apply();
+        }
+    }
+
+    /*
+     * Every local write goes through these or commitChanges, so the search index and the todo
+     * views stay in step with the local store. Executor only.
+     */
+
+    private void upsertLocal(TodoItem todoItem) {
+        TodoSearchIndex index = searchIndex(todoItem.getUserId());
+        markSearchIndexStale(todoItem.getUserId());
+        todoDao.upsert(todoItem);
+        index.put(todoItem);
+        TodoViews views = loadedTodoViews(todoItem.getUserId());
+        if (views != null) {
+            views.put(todoItem);
+        }
+        scheduleSearchIndexSave();
+    }
+
+    // Deleted todos stay in the store as tombstones, which every read leaves out
+    private void deleteLocal(TodoItem todoItem) {
+        TodoItem tombstone = new TodoItem(todoItem);
+        tombstone.setDeleted(true);
+        tombstone.setCompleted(true);
+        TodoSearchIndex index = searchIndex(todoItem.getUserId());
+        markSearchIndexStale(todoItem.getUserId());
+        todoDao.upsert(tombstone);
+        index.remove(todoItem.getId());
+        TodoViews views = loadedTodoViews(todoItem.getUserId());
+        if (views != null) {
+            views.remove(todoItem.getId());
+        }
+        scheduleSearchIndexSave();
+    }
+
+    private TodoViews todoViews(String userId) {
+        if (todoViews == null || !todoViews.getUserId().equals(userId)) {
+            todoViews = new TodoViews(userId, todoDao.getTodos(userId), startOfToday());
+        }
+        return todoViews;
+    }
+
+    // Views that have not been built yet are read straight from the store when they are
+    private TodoViews loadedTodoViews(String userId) {
+        return todoViews != null && todoViews.getUserId().equals(userId) ? todoViews : null;
+    }
+
+    private static long startOfToday() {
+        Calendar today = Calendar.getInstance();
+        today.set(Calendar.HOUR_OF_DAY, 0);
+        today.set(Calendar.MINUTE, 0);
+        today.set(Calendar.SECOND, 0);
+        today.set(Calendar.MILLISECOND, 0);
+        return today.getTimeInMillis();
+    }
+
+    // Loads the user's index from disk, or rebuilds it from the local store when it is missing or out of step
+    private TodoSearchIndex searchIndex(String userId) {
+        if (searchIndex != null && searchIndex.getUserId().equals(userId)) {
+            return searchIndex;
+        }
+        saveSearchIndex();
+
+        TodoSearchIndex index = readSearchIndex(userId);
+        // Changes made after the last save, before the process died, left the generation ahead of the file
+        if (index == null || index.getGeneration() != getSearchGeneration(userId)) {
+            index = new TodoSearchIndex(userId);
+            for (TodoItem todoItem : todoDao.getTodos(userId)) {
+                index.put(todoItem);
+            }
+            searchIndexDirty = true;
+        } else {
+            searchIndexDirty = false;
+        }
+        searchIndex = index;
+        return index;
+    }
+
+    /*
+     * Called before each local store write. The first write after a save moves the generation past
+     * the one in the saved file, and commit() puts that on disk before the store changes, so a file
+     * that misses a write never matches. Later writes before the next save find the index dirty
+     * and skip it.
+     */
+    private void markSearchIndexStale(String userId) {
+        if (!searchIndexDirty) {
+            prefs.edit().putLong(Constants.KEY_TODO_SEARCH_GENERATION + userId, getSearchGeneration(userId) + 1)
+                    .commit();
+        }
+    }
+
+    private long getSearchGeneration(String userId) {
+        return prefs.getLong(Constants.KEY_TODO_SEARCH_GENERATION + userId, 0L);
+    }
+
+    // Saves are coalesced so a burst of edits or a synced page writes the file once
+    private void scheduleSearchIndexSave() {
+        searchIndexDirty = true;
+        if (!searchIndexSaveScheduled) {
+            searchIndexSaveScheduled = true;
+            mainHandler.postDelayed(() -> executor.execute(() -> {
+                searchIndexSaveScheduled = false;
+                saveSearchIndex();
+            }), Constants.SEARCH_INDEX_SAVE_DELAY_MS);
+        }
+    }
+
+    private void saveSearchIndex() {
+        if (searchIndex == null || !searchIndexDirty) {
+            return;
+        }
+        File file = searchIndexFile(searchIndex.getUserId());
+        File temp = new File(file.getPath() + ".tmp");
+        if (!searchIndexDir.exists() && !searchIndexDir.mkdirs()) {
+            Log.w(TAG, "Could not create " + searchIndexDir);
+            return;
+        }
+        // Every store write so far has reached the index, since both happen on the executor
+        searchIndex.setGeneration(getSearchGeneration(searchIndex.getUserId()));
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            searchIndex.writeTo(out);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to save search index", e);
+            return;
+        }
+        if (temp.renameTo(file)) {
+            searchIndexDirty = false;
+        }
+    }
+
+    private TodoSearchIndex readSearchIndex(String userId) {
+        File file = searchIndexFile(userId);
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            TodoSearchIndex index = TodoSearchIndex.readFrom(in);
+            return userId.equals(index.getUserId()) ? index : null;
+        } catch (IOException e) {
+            Log.w(TAG, "Discarding unreadable search index", e);
+            return null;
+        }
+    }
+
+    private File searchIndexFile(String userId) {
+        return new File(searchIndexDir, userId + ".idx");
+    }
+
+    private long getWatermark(String userId) {
+        return prefs.getLong(Constants.KEY_TODO_SYNC_WATERMARK + userId, 0L);
+    }
+
+    // Package-private so tests can run steps on the store executor
+    <T> Task<T> runInBackground(Callable<T> callable) {
+        TaskCompletionSource<T> source = new TaskCompletionSource<>();
+        executor.execute(() -> {
+            try {
+                source.setResult(callable.call());
+            } catch (Exception e) {
+                source.setException(e);
+            }
+        });
+        return source.getTask();
+    }
+}
@@ -0,0 +1,285 @@
+package com.sitani.data;
+
+import com.sitani.models.TodoItem;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Inverted index over one user's todo titles and descriptions. Every indexed todo gets a small
+ * int number, and each token maps to the sorted numbers of the todos that contain it. A query
+ * term matches every token it is a prefix of, and all terms of a query must match.
+ *
+ * Not thread-safe: TodoRepository only uses it from its executor.
+ */
+public class TodoSearchIndex {
+    private static final int FORMAT_VERSION = 2;
+
+    private final String userId;
+    // Local store generation the index was saved at; TodoRepository rebuilds it when they differ
+    private long generation;
+    // Number -> todo id, with null left behind by removed todos until the next save compacts them
+    private final List<String> todoIds = new ArrayList<>();
+    // Number -> indexed tokens, needed to take a todo out of its posting lists again
+    private final List<String[]> todoTokens = new ArrayList<>();
+    private final Map<String, Integer> numbers = new HashMap<>();
+    private final TreeMap<String, PostingList> postings = new TreeMap<>();
+
+    public TodoSearchIndex(String userId) {
+        this.userId = userId;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public void setGeneration(long generation) {
+        this.generation = generation;
+    }
+
+    // Number of todos currently indexed
+    public int size() {
+        return numbers.size();
+    }
+
+    public void put(TodoItem todoItem) {
+        if (todoItem.isDeleted()) {
+            remove(todoItem.getId());
+            return;
+        }
+        String[] tokens = tokenize(todoItem.getTitle(), todoItem.getDescription());
+        Integer number = numbers.get(todoItem.getId());
+        if (number != null) {
+            if (Arrays.equals(todoTokens.get(number), tokens)) {
+                // Status toggles and timestamp bumps leave the text alone
+                return;
+            }
+            removePostings(number);
+        } else {
+            number = todoIds.size();
+            todoIds.add(todoItem.getId());
+            todoTokens.add(null);
+            numbers.put(todoItem.getId(), number);
+        }
+        todoTokens.set(number, tokens);
+        for (String token : tokens) {
+            PostingList list = postings.get(token);
+            if (list == null) {
+                list = new PostingList();
+                postings.put(token, list);
+            }
+            list.add(number);
+        }
+    }
+
+    public void remove(String todoId) {
+        Integer number = numbers.remove(todoId);
+        if (number != null) {
+            removePostings(number);
+            todoIds.set(number, null);
+            todoTokens.set(number, null);
+        }
+    }
+
+    /**
+     * Ids of the todos matching every term of the query, in no particular order. A blank query
+     * matches nothing.
+     */
+    public List<String> search(String query) {
+        String[] terms = tokenize(query, null);
+        if (terms.length == 0) {
+            return Collections.emptyList();
+        }
+
+        BitSet matches = null;
+        for (String term : terms) {
+            BitSet termMatches = new BitSet(todoIds.size());
+            // Every token starting with the term sorts between the term and the term followed by the highest char
+            for (PostingList list : postings.subMap(term, true, term + Character.MAX_VALUE, false).values()) {
+                list.addTo(termMatches);
+            }
+            if (matches == null) {
+                matches = termMatches;
+            } else {
+                matches.and(termMatches);
+            }
+            if (matches.isEmpty()) {
+                return Collections.emptyList();
+            }
+        }
+
+        List<String> result = new ArrayList<>(matches.cardinality());
+        for (int number = matches.nextSetBit(0); number >= 0; number = matches.nextSetBit(number + 1)) {
+            result.add(todoIds.get(number));
+        }
+        return result;
+    }
+
+    private void removePostings(int number) {
+        for (String token : todoTokens.get(number)) {
+            PostingList list = postings.get(token);
+            if (list != null && list.remove(number) && list.size == 0) {
+                postings.remove(token);
+            }
+        }
+    }
+
+    // Lower-cased runs of letters and digits, each distinct token once, in sorted order
+    static String[] tokenize(String first, String second) {
+        Set<String> tokens = new LinkedHashSet<>();
+        addTokens(first, tokens);
+        addTokens(second, tokens);
+        String[] sorted = tokens.toArray(new String[0]);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private static void addTokens(String text, Set<String> tokens) {
+        if (text == null) {
+            return;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+    }
+
+    /*
+     * Only live todos are written, renumbered in their current order so the posting lists stay
+     * sorted. The per-todo tokens are rebuilt from the posting lists when reading.
+     */
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        int[] remapped = new int[todoIds.size()];
+        int live = 0;
+        for (int number = 0; number < todoIds.size(); number++) {
+            remapped[number] = todoIds.get(number) != null ? live++ : -1;
+        }
+
+        out.writeInt(FORMAT_VERSION);
+        out.writeUTF(userId);
+        out.writeLong(generation);
+        out.writeInt(live);
+        for (String todoId : todoIds) {
+            if (todoId != null) {
+                out.writeUTF(todoId);
+            }
+        }
+        out.writeInt(postings.size());
+        for (Map.Entry<String, PostingList> entry : postings.entrySet()) {
+            PostingList list = entry.getValue();
+            out.writeUTF(entry.getKey());
+            out.writeInt(list.size);
+            for (int i = 0; i < list.size; i++) {
+                out.writeInt(remapped[list.numbers[i]]);
+            }
+        }
+    }
+
+    public static TodoSearchIndex readFrom(DataInputStream in) throws IOException {
+        int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported search index format " + version);
+        }
+        TodoSearchIndex index = new TodoSearchIndex(in.readUTF());
+        index.generation = in.readLong();
+        int todoCount = in.readInt();
+        List<List<String>> tokensByNumber = new ArrayList<>(todoCount);
+        for (int number = 0; number < todoCount; number++) {
+            String todoId = in.readUTF();
+            index.todoIds.add(todoId);
+            index.numbers.put(todoId, number);
+            tokensByNumber.add(new ArrayList<>());
+        }
+
+        int tokenCount = in.readInt();
+        for (int t = 0; t < tokenCount; t++) {
+            String token = in.readUTF();
+            int size = in.readInt();
+            PostingList list = new PostingList(size);
+            for (int i = 0; i < size; i++) {
+                int number = in.readInt();
+                if (number < 0 || number >= todoCount) {
+                    throw new IOException("Corrupt search index");
+                }
+                list.numbers[i] = number;
+                tokensByNumber.get(number).add(token);
+            }
+            list.size = size;
+            index.postings.put(token, list);
+        }
+
+        // Tokens were written in sorted order, so each todo's list comes back sorted too
+        for (List<String> tokens : tokensByNumber) {
+            index.todoTokens.add(tokens.toArray(new String[0]));
+        }
+        return index;
+    }
+
+    // Growable sorted int array; numbers are mostly appended, since new todos get the highest one
+    private static class PostingList {
+        int[] numbers;
+        int size;
+
+        PostingList() {
+            this(4);
+        }
+
+        PostingList(int capacity) {
+            numbers = new int[Math.max(capacity, 1)];
+        }
+
+        void add(int number) {
+            int index = Arrays.binarySearch(numbers, 0, size, number);
+            if (index >= 0) {
+                return;
+            }
+            index = -(index + 1);
+            if (size == numbers.length) {
+                numbers = Arrays.copyOf(numbers, size * 2);
+            }
+            System.arraycopy(numbers, index, numbers, index + 1, size - index);
+            numbers[index] = number;
+            size++;
+        }
+
+        boolean remove(int number) {
+            int index = Arrays.binarySearch(numbers, 0, size, number);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(numbers, index + 1, numbers, index, size - index - 1);
+            size--;
+            return true;
+        }
+
+        void addTo(BitSet bits) {
+            for (int i = 0; i < size; i++) {
+                bits.set(numbers[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.sitani.data;
+
+import com.sitani.models.TodoItem;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Filtered and sorted views over one user's todos. A view is built the first time it is asked
+ * for and from then on kept up to date change by change, so switching between views that have
+ * already been built does not filter or sort anything again.
+ *
+ * Todos have no due date, so "today" means created today and "overdue" means created on an
+ * earlier day and still pending.
+ *
+ * Not thread-safe: TodoRepository only uses it from its executor.
+ */
+public class TodoViews {
+
+    public enum Filter {
+        ALL, PENDING, COMPLETED, TODAY, OVERDUE;
+
+        public boolean matches(TodoItem todoItem, long dayStart) {
+            switch (this) {
+                case PENDING:
+                    return !todoItem.isCompleted();
+                case COMPLETED:
+                    return todoItem.isCompleted();
+                case TODAY:
+                    return todoItem.getCreatedAt() >= dayStart;
+                case OVERDUE:
+                    return !todoItem.isCompleted() && todoItem.getCreatedAt() < dayStart;
+                default:
+                    return true;
+            }
+        }
+
+        boolean dependsOnDay() {
+            return this == TODAY || this == OVERDUE;
+        }
+    }
+
+    // Every order falls back to NEWEST and then the id, so no two todos ever compare equal
+    public enum Sort {
+        NEWEST, OLDEST, TITLE, RECENTLY_UPDATED;
+
+        private static final Comparator<TodoItem> NEWEST_FIRST = (a, b) -> {
+            if (a.getCreatedAt() != b.getCreatedAt()) {
+                return a.getCreatedAt() > b.getCreatedAt() ? -1 : 1;
+            }
+            return b.getId().compareTo(a.getId());
+        };
+
+        public Comparator<TodoItem> comparator() {
+            switch (this) {
+                case OLDEST:
+                    return (a, b) -> NEWEST_FIRST.compare(b, a);
+                case TITLE:
+                    return (a, b) -> {
+                        int byTitle = String.CASE_INSENSITIVE_ORDER.compare(titleOf(a), titleOf(b));
+                        return byTitle != 0 ? byTitle : NEWEST_FIRST.compare(a, b);
+                    };
+                case RECENTLY_UPDATED:
+                    return (a, b) -> {
+                        if (a.getUpdatedAt() != b.getUpdatedAt()) {
+                            return a.getUpdatedAt() > b.getUpdatedAt() ? -1 : 1;
+                        }
+                        return NEWEST_FIRST.compare(a, b);
+                    };
+                default:
+                    return NEWEST_FIRST;
+            }
+        }
+
+        private static String titleOf(TodoItem todoItem) {
+            return todoItem.getTitle() != null ? todoItem.getTitle() : "";
+        }
+    }
+
+    private static class View {
+        final Filter filter;
+        final Comparator<TodoItem> comparator;
+        final List<TodoItem> items = new ArrayList<>();
+
+        View(Filter filter, Sort sort) {
+            this.filter = filter;
+            this.comparator = sort.comparator();
+        }
+
+        void insert(TodoItem todoItem) {
+            int index = Collections.binarySearch(items, todoItem, comparator);
+            items.add(index >= 0 ? index : -(index + 1), todoItem);
+        }
+
+        void remove(TodoItem todoItem) {
+            // The comparator is a total order, so the old copy is found at its exact position
+            int index = Collections.binarySearch(items, todoItem, comparator);
+            if (index >= 0) {
+                items.remove(index);
+            }
+        }
+    }
+
+    private final String userId;
+    private final Map<String, TodoItem> todos = new HashMap<>();
+    private final Map<Filter, Map<Sort, View>> views = new EnumMap<>(Filter.class);
+    private long dayStart;
+
+    public TodoViews(String userId, List<TodoItem> todoItems, long dayStart) {
+        this.userId = userId;
+        this.dayStart = dayStart;
+        for (TodoItem todoItem : todoItems) {
+            if (!todoItem.isDeleted()) {
+                todos.put(todoItem.getId(), todoItem);
+            }
+        }
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    // Views that depend on the day are dropped when it changes and rebuilt on next use
+    public void setDayStart(long dayStart) {
+        if (dayStart == this.dayStart) {
+            return;
+        }
+        this.dayStart = dayStart;
+        for (Filter filter : Filter.values()) {
+            if (filter.dependsOnDay()) {
+                views.remove(filter);
+            }
+        }
+    }
+
+    public void put(TodoItem todoItem) {
+        if (todoItem.isDeleted()) {
+            remove(todoItem.getId());
+            return;
+        }
+        TodoItem previous = todos.put(todoItem.getId(), todoItem);
+        for (Map<Sort, View> bySort : views.values()) {
+            for (View view : bySort.values()) {
+                if (previous != null && view.filter.matches(previous, dayStart)) {
+                    view.remove(previous);
+                }
+                if (view.filter.matches(todoItem, dayStart)) {
+                    view.insert(todoItem);
+                }
+            }
+        }
+    }
+
+    public void remove(String todoId) {
+        TodoItem previous = todos.remove(todoId);
+        if (previous == null) {
+            return;
+        }
+        for (Map<Sort, View> bySort : views.values()) {
+            for (View view : bySort.values()) {
+                if (view.filter.matches(previous, dayStart)) {
+                    view.remove(previous);
+                }
+            }
+        }
+    }
+
+    // A copy the caller owns, since the view keeps changing after it is returned
+    public List<TodoItem> get(Filter filter, Sort sort) {
+        Map<Sort, View> bySort = views.get(filter);
+        if (bySort == null) {
+            bySort = new EnumMap<>(Sort.class);
+            views.put(filter, bySort);
+        }
+        View view = bySort.get(sort);
+        if (view == null) {
+            view = new View(filter, sort);
+            for (TodoItem todoItem : todos.values()) {
+                if (filter.matches(todoItem, dayStart)) {
+                    view.items.add(todoItem);
+                }
+            }
+            Collections.sort(view.items, view.comparator);
+            bySort.put(sort, view);
+        }
+        return new ArrayList<>(view.items);
+    }
+}
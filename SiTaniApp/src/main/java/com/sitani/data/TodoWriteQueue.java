@@ -0,0 +1,137 @@
+package com.sitani.data;
+
+import com.google.android.gms.tasks.OnCompleteListener;
+import com.sitani.models.TodoItem;
+import com.sitani.utils.FirebaseHelper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects todo writes for a short window and commits them as WriteBatches. Repeated writes
+ * to the same todo collapse into one: field updates are merged, and a full set replaces
+ * anything queued before it. Every caller is notified once its own write has committed or been
+ * rejected.
+ */
+class TodoWriteQueue {
+    static final long COALESCE_WINDOW_MS = 500;
+    // A pending write is at most one set plus one update, and a batch takes 500 operations
+    private static final int MAX_WRITES_PER_BATCH = 250;
+
+    private static class PendingWrite {
+        final String userId;
+        TodoItem fullItem;
+        final Map<String, Object> fields = new HashMap<>();
+        final List<OnCompleteListener<Void>> listeners = new ArrayList<>();
+
+        PendingWrite(String userId) {
+            this.userId = userId;
+        }
+    }
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final Map<String, PendingWrite> pending = new LinkedHashMap<>();
+    private boolean flushScheduled;
+
+    synchronized void enqueueSet(TodoItem todoItem, OnCompleteListener<Void> onCompleteListener) {
+        PendingWrite write = pendingFor(todoItem.getUserId(), todoItem.getId());
+        write.fullItem = new TodoItem(todoItem);
+        write.fields.clear();
+        write.listeners.add(onCompleteListener);
+        scheduleFlush();
+    }
+
+    synchronized void enqueueUpdate(String userId, String todoId, Map<String, Object> fields,
+                                    OnCompleteListener<Void> onCompleteListener) {
+        PendingWrite write = pendingFor(userId, todoId);
+        write.fields.putAll(fields);
+        write.listeners.add(onCompleteListener);
+        scheduleFlush();
+    }
+
+    private PendingWrite pendingFor(String userId, String todoId) {
+        PendingWrite write = pending.get(todoId);
+        if (write == null) {
+            write = new PendingWrite(userId);
+            pending.put(todoId, write);
+        }
+        return write;
+    }
+
+    private void scheduleFlush() {
+        if (!flushScheduled) {
+            flushScheduled = true;
+            scheduler.schedule(this::flush, COALESCE_WINDOW_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flush() {
+        // Todos live under their owner's document, so each batch is for a single user
+        Map<String, List<Map.Entry<String, PendingWrite>>> writesByUser = new LinkedHashMap<>();
+        synchronized (this) {
+            for (Map.Entry<String, PendingWrite> entry : pending.entrySet()) {
+                List<Map.Entry<String, PendingWrite>> writes = writesByUser.get(entry.getValue().userId);
+                if (writes == null) {
+                    writes = new ArrayList<>();
+                    writesByUser.put(entry.getValue().userId, writes);
+                }
+                writes.add(entry);
+            }
+            pending.clear();
+            flushScheduled = false;
+        }
+
+        for (Map.Entry<String, List<Map.Entry<String, PendingWrite>>> entry : writesByUser.entrySet()) {
+            List<Map.Entry<String, PendingWrite>> writes = entry.getValue();
+            for (int start = 0; start < writes.size(); start += MAX_WRITES_PER_BATCH) {
+                commit(entry.getKey(), writes.subList(start, Math.min(start + MAX_WRITES_PER_BATCH, writes.size())), true);
+            }
+        }
+    }
+
+    /*
+     * A batch is atomic, so one rejected write fails every write in it. When that happens each
+     * write is committed again on its own, and only the ones rejected again are reported as
+     * failed and rolled back.
+     */
+    private void commit(String userId, List<Map.Entry<String, PendingWrite>> writes, boolean retrySeparately) {
+        Map<String, TodoItem> sets = new HashMap<>();
+        Map<String, Map<String, Object>> updates = new HashMap<>();
+        List<OnCompleteListener<Void>> listeners = new ArrayList<>();
+
+        for (Map.Entry<String, PendingWrite> entry : writes) {
+            PendingWrite write = entry.getValue();
+            if (write.fullItem != null) {
+                sets.put(entry.getKey(), write.fullItem);
+            }
+            if (!write.fields.isEmpty()) {
+                updates.put(entry.getKey(), write.fields);
+            }
+            listeners.addAll(write.listeners);
+        }
+
+        FirebaseHelper.commitTodoBatch(userId, sets, updates, task -> {
+            if (task.isSuccessful()) {
+                for (OnCompleteListener<Void> listener : listeners) {
+                    listener.onComplete(task);
+                }
+            } else if (retrySeparately && writes.size() > 1) {
+                for (Map.Entry<String, PendingWrite> entry : writes) {
+                    commit(userId, Collections.singletonList(entry), false);
+                }
+            } else {
+                // Newest first, so rollbacks of coalesced edits end on the oldest state
+                for (int i = listeners.size() - 1; i >= 0; i--) {
+                    listeners.get(i).onComplete(task);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,163 @@
+package com.sitani.data;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.google.android.gms.tasks.OnCompleteListener;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.gson.Gson;
+import com.sitani.models.User;
+import com.sitani.utils.Constants;
+import com.sitani.utils.FirebaseHelper;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The signed-in user's profile, shared by every screen. The first load in a process shows the
+ * copy on disk right away and refreshes it from Firestore once; after that the profile is
+ * served from memory, and saves update it in place.
+ */
+public class UserRepository {
+    private static final String TAG = "UserRepository";
+
+    private static volatile UserRepository instance;
+
+    private final File cacheFile;
+    private final Gson gson = new Gson();
+    private final MutableLiveData<User> user = new MutableLiveData<>();
+    private final ExecutorService diskExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private String loadedUserId;
+    private Task<User> currentLoad;
+
+    private UserRepository(Context context) {
+        cacheFile = new File(context.getFilesDir(), Constants.USER_CACHE_FILE);
+    }
+
+    public static UserRepository getInstance(Context context) {
+        if (instance == null) {
+            synchronized (UserRepository.class) {
+                if (instance == null) {
+                    instance = new UserRepository(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    public LiveData<User> getUser() {
+        return user;
+    }
+
+    public void loadUser(String userId) {
+        loadUser(userId, task -> { });
+    }
+
+    // Must be called on the main thread. Completes at once when the user is already loaded.
+    public void loadUser(String userId, OnCompleteListener<User> onCompleteListener) {
+        if (!userId.equals(loadedUserId) || currentLoad == null) {
+            loadedUserId = userId;
+            currentLoad = startLoad(userId);
+        }
+        currentLoad.addOnCompleteListener(onCompleteListener);
+    }
+
+    private Task<User> startLoad(String userId) {
+        TaskCompletionSource<User> load = new TaskCompletionSource<>();
+
+        diskExecutor.execute(() -> {
+            User cached = readFromDisk();
+            if (cached != null && userId.equals(cached.getUserId())) {
+                // Never replace a profile that has already arrived from Firestore
+                mainHandler.post(() -> {
+                    if (user.getValue() == null && userId.equals(loadedUserId)) {
+                        user.setValue(cached);
+                    }
+                });
+            }
+        });
+
+        // Called with the cached copy first when Firestore has one, then with the server copy
+        FirebaseHelper.getUserCacheFirst(userId, task -> {
+            if (!userId.equals(loadedUserId)) {
+                load.trySetException(new IllegalStateException("User changed while loading"));
+                return;
+            }
+            if (task.isSuccessful()) {
+                setUser(task.getResult());
+                load.trySetResult(task.getResult());
+            } else if (!load.getTask().isComplete()) {
+                // Let the next caller retry; the disk copy, if any, is already showing
+                loadedUserId = null;
+                Log.w(TAG, "Failed to load user " + userId, task.getException());
+                load.setException(task.getException());
+            }
+        });
+        return load.getTask();
+    }
+
+    public void saveUser(User updated, OnCompleteListener<Void> onCompleteListener) {
+        FirebaseHelper.saveUser(updated, task -> {
+            if (task.isSuccessful()) {
+                setUser(updated);
+            }
+            onCompleteListener.onComplete(task);
+        });
+    }
+
+    // Must be called on the main thread
+    public void clear() {
+        loadedUserId = null;
+        currentLoad = null;
+        user.setValue(null);
+        diskExecutor.execute(cacheFile::delete);
+    }
+
+    private void setUser(User value) {
+        user.setValue(value);
+        diskExecutor.execute(() -> writeToDisk(value));
+    }
+
+    private User readFromDisk() {
+        if (!cacheFile.exists()) {
+            return null;
+        }
+        try (Reader reader = new InputStreamReader(new FileInputStream(cacheFile), StandardCharsets.UTF_8)) {
+            return gson.fromJson(reader, User.class);
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Discarding unreadable user cache", e);
+            cacheFile.delete();
+            return null;
+        }
+    }
+
+    private void writeToDisk(User value) {
+        File temp = new File(cacheFile.getPath() + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8)) {
+            gson.toJson(value, writer);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write user cache", e);
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(cacheFile)) {
+            temp.delete();
+        }
+    }
+}
@@ -0,0 +1,421 @@
+package com.sitani.data;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.google.gson.Gson;
+import com.sitani.models.FarmField;
+import com.sitani.models.ForecastResponse;
+import com.sitani.models.WeatherResponse;
+import com.sitani.models.WeatherSeries;
+import com.sitani.utils.Constants;
+import com.sitani.utils.SingleFlight;
+import com.sitani.utils.WeatherApiClient;
+import com.sitani.utils.WeatherApiService;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Current weather keyed by a grid cell of {@link Constants#WEATHER_CELL_SIZE_DEGREES}. The last
+ * response per cell is kept in memory and on disk and served immediately; once it is older
+ * than {@link Constants#WEATHER_CACHE_TTL_MS} it is revalidated from the network in the
+ * background and the callback fires a second time with the fresh result.
+ */
+public class WeatherRepository {
+    private static final String TAG = "WeatherRepository";
+    private static final int MEMORY_CACHE_ENTRIES = 16;
+
+    private static volatile WeatherRepository instance;
+
+    public interface WeatherCallback {
+        void onWeather(WeatherResponse weather, long fetchedAt);
+        void onError(Throwable t);
+    }
+
+    public interface FieldWeatherCallback {
+        void onFieldWeather(FarmField field, WeatherResponse weather, long fetchedAt);
+        void onFieldError(FarmField field, Throwable t);
+    }
+
+    public interface ForecastCallback {
+        void onForecast(WeatherSeries forecast);
+        void onError(Throwable t);
+    }
+
+    private static class CachedWeather {
+        WeatherResponse weather;
+        long fetchedAt;
+
+        CachedWeather() {
+            // Required for Gson
+        }
+
+        CachedWeather(WeatherResponse weather, long fetchedAt) {
+            this.weather = weather;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+
+    private final Context context;
+    private final File cacheDir;
+    private final Gson gson = WeatherApiClient.getGson();
+    private final LruCache<String, CachedWeather> memoryCache = new LruCache<>(MEMORY_CACHE_ENTRIES);
+    private final LruCache<String, WeatherSeries> forecastMemoryCache = new LruCache<>(MEMORY_CACHE_ENTRIES);
+    private final SingleFlight<CachedWeather> weatherFlights = new SingleFlight<>();
+    private final SingleFlight<WeatherSeries> forecastFlights = new SingleFlight<>();
+    private final ExecutorService diskExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private WeatherRepository(Context context) {
+        this.context = context;
+        cacheDir = new File(context.getFilesDir(), Constants.WEATHER_CACHE_DIR);
+    }
+
+    public static WeatherRepository getInstance(Context context) {
+        if (instance == null) {
+            synchronized (WeatherRepository.class) {
+                if (instance == null) {
+                    instance = new WeatherRepository(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    public static String cellKey(double lat, double lon) {
+        return String.format(Locale.US, "%d_%d", cellIndex(lat), cellIndex(lon));
+    }
+
+    private static long cellIndex(double value) {
+        return Math.round(value / Constants.WEATHER_CELL_SIZE_DEGREES);
+    }
+
+    private static double cellCenter(double value) {
+        return cellIndex(value) * Constants.WEATHER_CELL_SIZE_DEGREES;
+    }
+
+    /**
+     * Fetches current weather and the forecast and stores both in the cache, blocking the calling
+     * thread until they arrive. Lookups go through the same single-flight groups as the UI, so a
+     * cell the UI is already loading is not requested twice. For background work only; the UI
+     * goes through the asynchronous getters.
+     */
+    public WeatherResponse prefetch(double lat, double lon) throws IOException {
+        String key = cellKey(lat, lon);
+        CachedWeather weather = await(weatherFlights, key, done -> requestWeather(key, lat, lon, done));
+        try {
+            await(forecastFlights, key, done -> requestForecast(key, lat, lon, done));
+        } catch (IOException e) {
+            // The forecast only adds to the notification, so the prefetch still succeeds without it
+            Log.w(TAG, "Forecast prefetch failed", e);
+        }
+        return weather.weather;
+    }
+
+    private static <T> T await(SingleFlight<T> flights, String key, SingleFlight.Work<T> work) throws IOException {
+        CountDownLatch finished = new CountDownLatch(1);
+        AtomicReference<T> result = new AtomicReference<>();
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        flights.run(key, work, new SingleFlight.Callback<T>() {
+            @Override
+            public void onSuccess(T value) {
+                result.set(value);
+                finished.countDown();
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                error.set(t);
+                finished.countDown();
+            }
+        });
+        try {
+            finished.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + key);
+        }
+        Throwable t = error.get();
+        if (t instanceof IOException) {
+            throw (IOException) t;
+        } else if (t != null) {
+            throw new IOException(t);
+        }
+        return result.get();
+    }
+
+    public WeatherSeries getCachedForecast(double lat, double lon) {
+        return forecastMemoryCache.get(cellKey(lat, lon));
+    }
+
+    // Must be called on the main thread; callbacks are delivered there as well
+    public void getWeather(double lat, double lon, WeatherCallback callback) {
+        String key = cellKey(lat, lon);
+        CachedWeather cached = memoryCache.get(key);
+        if (cached != null) {
+            deliverCached(key, cached, lat, lon, callback);
+            return;
+        }
+
+        diskExecutor.execute(() -> {
+            CachedWeather fromDisk = readFromDisk(key);
+            mainHandler.post(() -> {
+                if (fromDisk != null) {
+                    memoryCache.put(key, fromDisk);
+                    deliverCached(key, fromDisk, lat, lon, callback);
+                } else {
+                    fetch(key, lat, lon, callback, false);
+                }
+            });
+        });
+    }
+
+    /**
+     * Loads weather for several fields at once. Fields in the same grid cell share a single
+     * lookup, and the lookups for distinct cells run in parallel, bounded by the HTTP
+     * client's dispatcher. The callback fires per field as results arrive.
+     */
+    public void getWeatherForFields(List<FarmField> fields, FieldWeatherCallback callback) {
+        Map<String, List<FarmField>> fieldsByCell = new LinkedHashMap<>();
+        for (FarmField field : fields) {
+            String key = cellKey(field.getLatitude(), field.getLongitude());
+            List<FarmField> cellFields = fieldsByCell.get(key);
+            if (cellFields == null) {
+                cellFields = new ArrayList<>();
+                fieldsByCell.put(key, cellFields);
+            }
+            cellFields.add(field);
+        }
+
+        for (List<FarmField> cellFields : fieldsByCell.values()) {
+            FarmField first = cellFields.get(0);
+            getWeather(first.getLatitude(), first.getLongitude(), new WeatherCallback() {
+                @Override
+                public void onWeather(WeatherResponse weather, long fetchedAt) {
+                    for (FarmField field : cellFields) {
+                        callback.onFieldWeather(field, weather, fetchedAt);
+                    }
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    for (FarmField field : cellFields) {
+                        callback.onFieldError(field, t);
+                    }
+                }
+            });
+        }
+    }
+
+    private void deliverCached(String key, CachedWeather cached, double lat, double lon, WeatherCallback callback) {
+        callback.onWeather(cached.weather, cached.fetchedAt);
+        if (System.currentTimeMillis() - cached.fetchedAt >= Constants.WEATHER_CACHE_TTL_MS) {
+            fetch(key, lat, lon, callback, true);
+        }
+    }
+
+    private void fetch(String key, double lat, double lon, WeatherCallback callback, boolean servedStale) {
+        // Callers asking for the same cell while a request is out share its response
+        weatherFlights.run(key, done -> requestWeather(key, lat, lon, done), new SingleFlight.Callback<CachedWeather>() {
+            @Override
+            public void onSuccess(CachedWeather fresh) {
+                callback.onWeather(fresh.weather, fresh.fetchedAt);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                // A stale entry has already been shown, which beats an error when offline
+                if (!servedStale) {
+                    callback.onError(t);
+                }
+            }
+        });
+    }
+
+    private void requestWeather(String key, double lat, double lon, SingleFlight.Callback<CachedWeather> done) {
+        // Requests use the cell center so every location in a cell shares one cache entry
+        WeatherApiClient.getWeatherService(context)
+                .getCurrentWeather(cellCenter(lat), cellCenter(lon), Constants.OPENWEATHER_API_KEY, "metric")
+                .enqueue(new Callback<WeatherResponse>() {
+                    @Override
+                    public void onResponse(Call<WeatherResponse> call, Response<WeatherResponse> response) {
+                        if (response.isSuccessful() && response.body() != null) {
+                            CachedWeather fresh = new CachedWeather(response.body(), System.currentTimeMillis());
+                            memoryCache.put(key, fresh);
+                            diskExecutor.execute(() -> writeToDisk(key, fresh));
+                            done.onSuccess(fresh);
+                        } else {
+                            done.onError(new IOException("Weather request failed: " + response.code()));
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(Call<WeatherResponse> call, Throwable t) {
+                        done.onError(t);
+                    }
+                });
+    }
+
+    // Same caching policy as getWeather, with the forecast kept in its compact binary form
+    public void getForecast(double lat, double lon, ForecastCallback callback) {
+        String key = cellKey(lat, lon);
+        WeatherSeries cached = forecastMemoryCache.get(key);
+        if (cached != null) {
+            deliverCachedForecast(key, cached, lat, lon, callback);
+            return;
+        }
+
+        diskExecutor.execute(() -> {
+            WeatherSeries fromDisk = readForecastFromDisk(key);
+            mainHandler.post(() -> {
+                if (fromDisk != null) {
+                    forecastMemoryCache.put(key, fromDisk);
+                    deliverCachedForecast(key, fromDisk, lat, lon, callback);
+                } else {
+                    fetchForecast(key, lat, lon, callback, false);
+                }
+            });
+        });
+    }
+
+    private void deliverCachedForecast(String key, WeatherSeries cached, double lat, double lon,
+                                       ForecastCallback callback) {
+        callback.onForecast(cached);
+        if (System.currentTimeMillis() - cached.getFetchedAt() >= Constants.FORECAST_CACHE_TTL_MS) {
+            fetchForecast(key, lat, lon, callback, true);
+        }
+    }
+
+    private void fetchForecast(String key, double lat, double lon, ForecastCallback callback, boolean servedStale) {
+        forecastFlights.run(key, done -> requestForecast(key, lat, lon, done), new SingleFlight.Callback<WeatherSeries>() {
+            @Override
+            public void onSuccess(WeatherSeries fresh) {
+                callback.onForecast(fresh);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                if (!servedStale) {
+                    callback.onError(t);
+                }
+            }
+        });
+    }
+
+    private void requestForecast(String key, double lat, double lon, SingleFlight.Callback<WeatherSeries> done) {
+        WeatherApiClient.getWeatherService(context)
+                .getForecast(cellCenter(lat), cellCenter(lon), Constants.OPENWEATHER_API_KEY, "metric")
+                .enqueue(new Callback<ForecastResponse>() {
+                    @Override
+                    public void onResponse(Call<ForecastResponse> call, Response<ForecastResponse> response) {
+                        if (response.isSuccessful() && response.body() != null) {
+                            WeatherSeries fresh = WeatherSeries.fromForecast(response.body(), System.currentTimeMillis());
+                            forecastMemoryCache.put(key, fresh);
+                            diskExecutor.execute(() -> writeForecastToDisk(key, fresh));
+                            done.onSuccess(fresh);
+                        } else {
+                            done.onError(new IOException("Forecast request failed: " + response.code()));
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(Call<ForecastResponse> call, Throwable t) {
+                        done.onError(t);
+                    }
+                });
+    }
+
+    private WeatherSeries readForecastFromDisk(String key) {
+        File file = new File(cacheDir, key + ".forecast");
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            return WeatherSeries.readFrom(in);
+        } catch (IOException e) {
+            Log.w(TAG, "Discarding unreadable forecast cache " + key, e);
+            file.delete();
+            return null;
+        }
+    }
+
+    private void writeForecastToDisk(String key, WeatherSeries forecast) {
+        if (!cacheDir.exists() && !cacheDir.mkdirs()) {
+            return;
+        }
+        File target = new File(cacheDir, key + ".forecast");
+        File temp = new File(cacheDir, key + ".forecast.tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            forecast.writeTo(out);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write forecast cache " + key, e);
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(target)) {
+            temp.delete();
+        }
+    }
+
+    private CachedWeather readFromDisk(String key) {
+        File file = new File(cacheDir, key + ".json");
+        if (!file.exists()) {
+            return null;
+        }
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            CachedWeather cached = gson.fromJson(reader, CachedWeather.class);
+            return cached != null && cached.weather != null ? cached : null;
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Discarding unreadable weather cache " + key, e);
+            file.delete();
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, CachedWeather cached) {
+        if (!cacheDir.exists() && !cacheDir.mkdirs()) {
+            return;
+        }
+        File target = new File(cacheDir, key + ".json");
+        File temp = new File(cacheDir, key + ".json.tmp");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8)) {
+            gson.toJson(cached, writer);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write weather cache " + key, e);
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(target)) {
+            temp.delete();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.sitani.models;
+
+import com.google.gson.annotations.SerializedName;
+
+import java.util.List;
+
+public class ForecastResponse {
+    @SerializedName("list")
+    private List<Entry> list;
+
+    @SerializedName("city")
+    private City city;
+
+    public List<Entry> getList() {
+        return list;
+    }
+
+    public void setList(List<Entry> list) {
+        this.list = list;
+    }
+
+    public City getCity() {
+        return city;
+    }
+
+    public void setCity(City city) {
+        this.city = city;
+    }
+
+    public static class Entry {
+        @SerializedName("dt")
+        private long timestamp;
+
+        @SerializedName("main")
+        private WeatherResponse.Main main;
+
+        @SerializedName("wind")
+        private WeatherResponse.Wind wind;
+
+        @SerializedName("rain")
+        private Precipitation rain;
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public void setTimestamp(long timestamp) {
+            this.timestamp = timestamp;
+        }
+
+        public WeatherResponse.Main getMain() {
+            return main;
+        }
+
+        public void setMain(WeatherResponse.Main main) {
+            this.main = main;
+        }
+
+        public WeatherResponse.Wind getWind() {
+            return wind;
+        }
+
+        public void setWind(WeatherResponse.Wind wind) {
+            this.wind = wind;
+        }
+
+        public Precipitation getRain() {
+            return rain;
+        }
+
+        public void setRain(Precipitation rain) {
+            this.rain = rain;
+        }
+    }
+
+    public static class Precipitation {
+        @SerializedName("3h")
+        private double threeHours;
+
+        public double getThreeHours() {
+            return threeHours;
+        }
+
+        public void setThreeHours(double threeHours) {
+            this.threeHours = threeHours;
+        }
+    }
+
+    public static class City {
+        @SerializedName("name")
+        private String name;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+}
@@ -1,17 +1,28 @@
 package com.sitani.models;
 
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Ignore;
+import androidx.room.PrimaryKey;
+
+@Entity(tableName = "todos")
 public class TodoItem {
-    private String id;
+    @PrimaryKey
+    @NonNull
+    private String id = "";
     private String title;
     private String description;
     private boolean completed;
     private long createdAt;
+    private long updatedAt;
+    private boolean deleted;
     private String userId;
 
     public TodoItem() {
         // Required for Firebase
     }
 
+    @Ignore
     public TodoItem(String id, String title, String description, String userId) {
         this.id = id;
         this.title = title;
@@ -19,14 +30,28 @@ public class TodoItem {
         this.completed = false;
         this.userId = userId;
         this.createdAt = System.currentTimeMillis();
+        this.updatedAt = this.createdAt;
+    }
+
+    @Ignore
+    public TodoItem(TodoItem other) {
+        this.id = other.id;
+        this.title = other.title;
+        this.description = other.description;
+        this.completed = other.completed;
+        this.createdAt = other.createdAt;
+        this.updatedAt = other.updatedAt;
+        this.deleted = other.deleted;
+        this.userId = other.userId;
     }
 
     // Getters and Setters
+    @NonNull
     public String getId() {
         return id;
     }
 
-    public void setId(String id) {
+    public void setId(@NonNull String id) {
         this.id = id;
     }
 
@@ -62,6 +87,23 @@ public class TodoItem {
         this.createdAt = createdAt;
     }
 
+    public long getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(long updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    // Tombstone flag so deletions reach other devices through the updatedAt sync
+    public boolean isDeleted() {
+        return deleted;
+    }
+
+    public void setDeleted(boolean deleted) {
+        this.deleted = deleted;
+    }
+
     public String getUserId() {
         return userId;
     }
@@ -0,0 +1,25 @@
+package com.sitani.models;
+
+public class TodoSummary {
+    private final long totalTasks;
+    private final long pendingTasks;
+    private final long fetchedAt;
+
+    public TodoSummary(long totalTasks, long pendingTasks) {
+        this.totalTasks = totalTasks;
+        this.pendingTasks = pendingTasks;
+        this.fetchedAt = System.currentTimeMillis();
+    }
+
+    public long getTotalTasks() {
+        return totalTasks;
+    }
+
+    public long getPendingTasks() {
+        return pendingTasks;
+    }
+
+    public long getFetchedAt() {
+        return fetchedAt;
+    }
+}
@@ -1,5 +1,8 @@
 package com.sitani.models;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class User {
     private String userId;
     private String name;
@@ -7,6 +10,7 @@ public class User {
     private String phone;
     private String address;
     private long createdAt;
+    private List<FarmField> fields = new ArrayList<>();
 
     public User() {
         // Required for Firebase
@@ -21,6 +25,17 @@ public class User {
         this.createdAt = System.currentTimeMillis();
     }
 
+    // Editable copy, so screens can change fields without touching the shared instance
+    public User(User other) {
+        this.userId = other.userId;
+        this.name = other.name;
+        this.email = other.email;
+        this.phone = other.phone;
+        this.address = other.address;
+        this.createdAt = other.createdAt;
+        this.fields = new ArrayList<>(other.fields);
+    }
+
     // Getters and Setters
     public String getUserId() {
         return userId;
@@ -69,4 +84,12 @@ public class User {
     public void setCreatedAt(long createdAt) {
         this.createdAt = createdAt;
     }
+
+    public List<FarmField> getFields() {
+        return fields;
+    }
+
+    public void setFields(List<FarmField> fields) {
+        this.fields = fields != null ? fields : new ArrayList<FarmField>();
+    }
 }
\ No newline at end of file
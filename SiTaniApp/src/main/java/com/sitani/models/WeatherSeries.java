@@ -0,0 +1,157 @@
+package com.sitani.models;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Forecast time series stored column by column in primitive arrays, one slot per forecast
+ * step in ascending time order. Five days of 3-hour steps is 40 slots, about 1 KB in total.
+ */
+public class WeatherSeries {
+    private static final int FORMAT_VERSION = 1;
+    private static final long STEP_MILLIS = 3 * 60 * 60 * 1000L;
+
+    private final String locationName;
+    private final long fetchedAt;
+    private final long[] timestamps;
+    private final float[] temperature;
+    private final float[] humidity;
+    private final float[] rain;
+    private final float[] windSpeed;
+
+    private WeatherSeries(String locationName, long fetchedAt, int size) {
+        this.locationName = locationName;
+        this.fetchedAt = fetchedAt;
+        this.timestamps = new long[size];
+        this.temperature = new float[size];
+        this.humidity = new float[size];
+        this.rain = new float[size];
+        this.windSpeed = new float[size];
+    }
+
+    public static WeatherSeries fromForecast(ForecastResponse forecast, long fetchedAt) {
+        List<ForecastResponse.Entry> entries = forecast.getList();
+        int size = entries != null ? entries.size() : 0;
+        String name = forecast.getCity() != null ? forecast.getCity().getName() : null;
+        WeatherSeries series = new WeatherSeries(name, fetchedAt, size);
+
+        for (int i = 0; i < size; i++) {
+            ForecastResponse.Entry entry = entries.get(i);
+            series.timestamps[i] = entry.getTimestamp() * 1000L;
+            if (entry.getMain() != null) {
+                series.temperature[i] = (float) entry.getMain().getTemp();
+                series.humidity[i] = entry.getMain().getHumidity();
+            }
+            if (entry.getWind() != null) {
+                series.windSpeed[i] = (float) entry.getWind().getSpeed();
+            }
+            if (entry.getRain() != null) {
+                series.rain[i] = (float) entry.getRain().getThreeHours();
+            }
+        }
+        return series;
+    }
+
+    public String getLocationName() {
+        return locationName;
+    }
+
+    public long getFetchedAt() {
+        return fetchedAt;
+    }
+
+    public int size() {
+        return timestamps.length;
+    }
+
+    public long getTimestamp(int index) {
+        return timestamps[index];
+    }
+
+    public float getTemperature(int index) {
+        return temperature[index];
+    }
+
+    public float getHumidity(int index) {
+        return humidity[index];
+    }
+
+    public float getRain(int index) {
+        return rain[index];
+    }
+
+    public float getWindSpeed(int index) {
+        return windSpeed[index];
+    }
+
+    // First slot whose timestamp is at or after timeMillis, or size() if there is none
+    public int indexAtOrAfter(long timeMillis) {
+        int index = Arrays.binarySearch(timestamps, timeMillis);
+        return index >= 0 ? index : -(index + 1);
+    }
+
+    // Slot of the step in progress at timeMillis, or the first slot after it if none is
+    public int indexOfStepAt(long timeMillis) {
+        int index = indexAtOrAfter(timeMillis);
+        if (index < timestamps.length && timestamps[index] == timeMillis) {
+            return index;
+        }
+        if (index > 0 && timestamps[index - 1] + STEP_MILLIS > timeMillis) {
+            return index - 1;
+        }
+        return index;
+    }
+
+    // Range totals include the step already under way at fromMillis
+    public float totalRain(long fromMillis, long toMillis) {
+        float total = 0f;
+        for (int i = indexOfStepAt(fromMillis); i < timestamps.length && timestamps[i] < toMillis; i++) {
+            total += rain[i];
+        }
+        return total;
+    }
+
+    public float maxWindSpeed(long fromMillis, long toMillis) {
+        float max = 0f;
+        for (int i = indexOfStepAt(fromMillis); i < timestamps.length && timestamps[i] < toMillis; i++) {
+            max = Math.max(max, windSpeed[i]);
+        }
+        return max;
+    }
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+        out.writeUTF(locationName != null ? locationName : "");
+        out.writeLong(fetchedAt);
+        out.writeInt(timestamps.length);
+        for (int i = 0; i < timestamps.length; i++) {
+            out.writeLong(timestamps[i]);
+            out.writeFloat(temperature[i]);
+            out.writeFloat(humidity[i]);
+            out.writeFloat(rain[i]);
+            out.writeFloat(windSpeed[i]);
+        }
+    }
+
+    public static WeatherSeries readFrom(DataInputStream in) throws IOException {
+        int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported weather series format " + version);
+        }
+        String name = in.readUTF();
+        long fetchedAt = in.readLong();
+        int size = in.readInt();
+        WeatherSeries series = new WeatherSeries(name.isEmpty() ? null : name, fetchedAt, size);
+        for (int i = 0; i < size; i++) {
+            series.timestamps[i] = in.readLong();
+            series.temperature[i] = in.readFloat();
+            series.humidity[i] = in.readFloat();
+            series.rain[i] = in.readFloat();
+            series.windSpeed[i] = in.readFloat();
+        }
+        return series;
+    }
+}
@@ -23,10 +23,10 @@ public class WeatherNotificationService {
     public WeatherNotificationService(Context context) {
         this.context = context;
         this.notificationManager = NotificationManagerCompat.from(context);
-        createNotificationChannels();
     }
 
-    private void createNotificationChannels() {
+    // Called once per process from NotificationChannelInitializer
+    public static void createNotificationChannels(Context context) {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
             // Weather Channel
             NotificationChannel weatherChannel = new NotificationChannel(
@@ -13,33 +13,10 @@ public class WeatherReceiver extends BroadcastReceiver {
             switch (action) {
                 case Intent.ACTION_BOOT_COMPLETED:
                 case Intent.ACTION_MY_PACKAGE_REPLACED:
-                    // Start notification service
-                    startNotificationService(context);
-                    break;
-                case Intent.ACTION_TIME_TICK:
-                    // Check if it's a good time to show notifications (e.g., 8 AM)
-                    java.util.Calendar calendar = java.util.Calendar.getInstance();
-                    int hour = calendar.get(java.util.Calendar.HOUR_OF_DAY);
-
-                    if (hour == 8) { // Show weather notification at 8 AM
-                        showDailyWeatherNotification(context);
-                    }
+                    // Make sure the daily weather job is scheduled
+                    WeatherWorker.schedule(context);
                     break;
             }
         }
     }
-
-    private void startNotificationService(Context context) {
-        Intent serviceIntent = new Intent(context, WeatherNotificationService.class);
-        // You would typically start a background service here
-        // For simplicity, we're just using the notification class directly
-    }
-
-    private void showDailyWeatherNotification(Context context) {
-        WeatherNotificationService notificationService = new WeatherNotificationService(context);
-        notificationService.showWeatherNotification(
-            context.getString(com.sitani.R.string.weather_notification_title),
-            context.getString(com.sitani.R.string.weather_notification_text)
-        );
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,121 @@
+package com.sitani.notifications;
+
+import android.Manifest;
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.sitani.R;
+import com.sitani.data.WeatherRepository;
+import com.sitani.models.WeatherResponse;
+import com.sitani.models.WeatherSeries;
+import com.sitani.utils.Constants;
+
+import java.io.IOException;
+import java.util.Calendar;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Daily job that prefetches weather for the last known location into the local cache and
+ * posts the morning notification with the actual conditions.
+ */
+public class WeatherWorker extends Worker {
+    private static final String TAG = "WeatherWorker";
+
+    public WeatherWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+        super(context, workerParams);
+    }
+
+    public static void schedule(Context context) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .setRequiresBatteryNotLow(true)
+                .build();
+
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(WeatherWorker.class, 1, TimeUnit.DAYS)
+                .setConstraints(constraints)
+                .setInitialDelay(millisUntilNextNotification(), TimeUnit.MILLISECONDS)
+                .build();
+
+        // KEEP leaves an already scheduled job and its timing untouched
+        WorkManager.getInstance(context).enqueueUniquePeriodicWork(
+                Constants.WEATHER_WORK_NAME, ExistingPeriodicWorkPolicy.KEEP, request);
+    }
+
+    private static long millisUntilNextNotification() {
+        Calendar now = Calendar.getInstance();
+        Calendar next = (Calendar) now.clone();
+        next.set(Calendar.HOUR_OF_DAY, Constants.WEATHER_NOTIFICATION_HOUR);
+        next.set(Calendar.MINUTE, 0);
+        next.set(Calendar.SECOND, 0);
+        next.set(Calendar.MILLISECOND, 0);
+        if (!next.after(now)) {
+            next.add(Calendar.DAY_OF_YEAR, 1);
+        }
+        return next.getTimeInMillis() - now.getTimeInMillis();
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Context context = getApplicationContext();
+        SharedPreferences prefs = context.getSharedPreferences(Constants.PREFS_NAME, Context.MODE_PRIVATE);
+        double lat = readCoordinate(prefs, Constants.KEY_LAST_LATITUDE, Constants.DEFAULT_LATITUDE);
+        double lon = readCoordinate(prefs, Constants.KEY_LAST_LONGITUDE, Constants.DEFAULT_LONGITUDE);
+
+        WeatherRepository repository = WeatherRepository.getInstance(context);
+        WeatherResponse weather;
+        try {
+            weather = repository.prefetch(lat, lon);
+        } catch (IOException e) {
+            Log.w(TAG, "Weather prefetch failed", e);
+            return Result.retry();
+        }
+
+        if (canPostNotifications(context)) {
+            showNotification(context, weather, repository.getCachedForecast(lat, lon));
+        }
+        return Result.success();
+    }
+
+    private static double readCoordinate(SharedPreferences prefs, String key, double defaultValue) {
+        return prefs.contains(key) ? Double.longBitsToDouble(prefs.getLong(key, 0L)) : defaultValue;
+    }
+
+    private static boolean canPostNotifications(Context context) {
+        return Build.VERSION.SDK_INT < Build.VERSION_CODES.TIRAMISU
+                || ContextCompat.checkSelfPermission(context, Manifest.permission.POST_NOTIFICATIONS)
+                == PackageManager.PERMISSION_GRANTED;
+    }
+
+    @SuppressLint("MissingPermission")
+    private static void showNotification(Context context, WeatherResponse weather, WeatherSeries forecast) {
+        String description = weather.getWeather() != null && weather.getWeather().length > 0
+                ? weather.getWeather()[0].getDescription() : "";
+        double temp = weather.getMain() != null ? weather.getMain().getTemp() : 0;
+        String location = weather.getName() != null ? weather.getName() : "";
+        String message = context.getString(R.string.weather_notification_conditions, temp, description, location);
+
+        if (forecast != null) {
+            long now = System.currentTimeMillis();
+            float rain = forecast.totalRain(now, now + TimeUnit.DAYS.toMillis(1));
+            message += " " + context.getString(R.string.weather_notification_rain, rain);
+        }
+
+        new WeatherNotificationService(context).showWeatherNotification(
+                context.getString(R.string.weather_notification_title), message);
+    }
+}
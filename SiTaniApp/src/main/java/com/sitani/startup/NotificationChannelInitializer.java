@@ -0,0 +1,27 @@
+package com.sitani.startup;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.startup.Initializer;
+
+import com.sitani.notifications.WeatherNotificationService;
+
+import java.util.Collections;
+import java.util.List;
+
+public class NotificationChannelInitializer implements Initializer<Void> {
+
+    @NonNull
+    @Override
+    public Void create(@NonNull Context context) {
+        WeatherNotificationService.createNotificationChannels(context);
+        return null;
+    }
+
+    @NonNull
+    @Override
+    public List<Class<? extends Initializer<?>>> dependencies() {
+        return Collections.emptyList();
+    }
+}
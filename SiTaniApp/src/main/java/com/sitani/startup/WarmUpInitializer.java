@@ -0,0 +1,47 @@
+package com.sitani.startup;
+
+import android.content.Context;
+import android.os.Process;
+
+import androidx.annotation.NonNull;
+import androidx.startup.Initializer;
+
+import com.sitani.utils.FirebaseHelper;
+import com.sitani.utils.WeatherApiClient;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Builds Firestore, FirebaseAuth and the Retrofit client off the main thread while the first
+ * activity inflates. Nothing waits on this; whichever caller gets there first initializes the
+ * lazy holder, and later callers find it ready.
+ */
+public class WarmUpInitializer implements Initializer<Void> {
+
+    @NonNull
+    @Override
+    public Void create(@NonNull Context context) {
+        Context appContext = context.getApplicationContext();
+        ExecutorService executor = Executors.newFixedThreadPool(2, runnable -> new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            runnable.run();
+        }, "startup-warm-up"));
+
+        executor.execute(() -> {
+            FirebaseHelper.getAuth();
+            FirebaseHelper.getFirestore();
+        });
+        executor.execute(() -> WeatherApiClient.getWeatherService(appContext));
+        executor.shutdown();
+        return null;
+    }
+
+    @NonNull
+    @Override
+    public List<Class<? extends Initializer<?>>> dependencies() {
+        return Collections.emptyList();
+    }
+}
@@ -6,7 +6,19 @@ public class Constants {
     public static final String OPENWEATHER_API_BASE_URL = "https://api.openweathermap.org/data/2.5/";
     public static final String OPENWEATHER_API_KEY = "e2a9db18c308a778e64de919b4d90dcb"; // Replace with actual API key
 
+    // HTTP Client
+    public static final long HTTP_CACHE_SIZE_BYTES = 5 * 1024 * 1024;
+    public static final String HTTP_CACHE_DIR = "http_cache";
+    public static final int HTTP_CONNECT_TIMEOUT_SECONDS = 10;
+    public static final int HTTP_READ_TIMEOUT_SECONDS = 20;
+    public static final int HTTP_CALL_TIMEOUT_SECONDS = 30;
+    public static final int HTTP_MAX_CONCURRENT_REQUESTS = 4;
+    // Used when the API does not send its own caching headers
+    public static final int HTTP_DEFAULT_MAX_AGE_SECONDS = 10 * 60;
+
     // Firebase Constants
+    public static final long FIRESTORE_CACHE_SIZE_BYTES = 40L * 1024 * 1024;
+    public static final int FIRESTORE_BACKGROUND_THREADS = 2;
     public static final String USERS_COLLECTION = "users";
     public static final String TODOS_COLLECTION = "todos";
 
@@ -15,6 +27,35 @@ public class Constants {
     public static final String KEY_USER_ID = "user_id";
     public static final String KEY_EMAIL = "email";
     public static final String KEY_NAME = "name";
+    // Server time; renamed from todo_sync_watermark_, which held device time
+    public static final String KEY_TODO_SYNC_WATERMARK = "todo_sync_server_watermark_";
+    public static final String KEY_TODO_BACKFILL_COMPLETE = "todo_backfill_complete_";
+    public static final String KEY_TODO_BACKFILL_CURSOR_CREATED_AT = "todo_backfill_cursor_created_at_";
+    public static final String KEY_TODO_BACKFILL_CURSOR_ID = "todo_backfill_cursor_id_";
+    public static final String KEY_TODO_MIGRATION_COMPLETE = "todo_migration_complete_";
+    public static final String KEY_TODO_SEARCH_GENERATION = "todo_search_generation_";
+    public static final String KEY_LAST_LATITUDE = "last_latitude";
+    public static final String KEY_LAST_LONGITUDE = "last_longitude";
+
+    // Local Database
+    public static final String DATABASE_NAME = "sitani.db";
+    public static final String USER_CACHE_FILE = "user_profile.json";
+    public static final String SEARCH_INDEX_DIR = "search_index";
+    public static final long SEARCH_INDEX_SAVE_DELAY_MS = 2000;
+
+    // Weather Cache
+    public static final long WEATHER_CACHE_TTL_MS = 30 * 60 * 1000;
+    public static final long FORECAST_CACHE_TTL_MS = 60 * 60 * 1000;
+    public static final double WEATHER_CELL_SIZE_DEGREES = 0.1;
+    public static final String WEATHER_CACHE_DIR = "weather_cache";
+
+    // Default location (Jakarta) when the device location is unavailable
+    public static final double DEFAULT_LATITUDE = -6.2088;
+    public static final double DEFAULT_LONGITUDE = 106.8456;
+
+    // Background Work
+    public static final String WEATHER_WORK_NAME = "daily_weather_prefetch";
+    public static final int WEATHER_NOTIFICATION_HOUR = 8;
 
     // Request Codes
     public static final int LOCATION_PERMISSION_REQUEST = 1001;
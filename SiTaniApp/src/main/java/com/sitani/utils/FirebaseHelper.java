@@ -1,79 +1,392 @@
 package com.sitani.utils;
 
+import android.app.Activity;
+import android.os.Process;
+
+import com.google.firebase.Timestamp;
 import com.google.firebase.auth.AuthResult;
 import com.sitani.models.TodoItem;
+import com.sitani.models.TodoSummary;
 import com.sitani.models.User;
 import com.google.android.gms.tasks.OnCompleteListener;
 import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.firestore.AggregateQuerySnapshot;
+import com.google.firebase.firestore.AggregateSource;
+import com.google.firebase.firestore.CollectionReference;
 import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.EventListener;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.FirebaseFirestoreSettings;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.PersistentCacheSettings;
 import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.SnapshotListenOptions;
+import com.google.firebase.firestore.Source;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class FirebaseHelper {
-    private static FirebaseAuth mAuth = FirebaseAuth.getInstance();
-    private static FirebaseFirestore db = FirebaseFirestore.getInstance();
+    private static final long TODO_SUMMARY_TTL_MS = 60 * 1000;
+
+    // Holders defer the SDK lookups to first use instead of the first touch of this class
+    private static class AuthHolder {
+        static final FirebaseAuth INSTANCE = FirebaseAuth.getInstance();
+    }
+
+    private static class FirestoreHolder {
+        static final FirebaseFirestore INSTANCE = createFirestore();
+    }
+
+    // Snapshot deserialization and aggregation run here; listeners still get results on the main thread
+    private static class BackgroundHolder {
+        static final ExecutorService INSTANCE = Executors.newFixedThreadPool(
+                Constants.FIRESTORE_BACKGROUND_THREADS, runnable -> new Thread(() -> {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }, "firestore-background"));
+    }
+
+    private static String prefetchedUserId;
+    private static Task<DocumentSnapshot> prefetchedUser;
+
+    private static final Map<String, TodoSummary> todoSummaryCache = new ConcurrentHashMap<>();
+    private static volatile int todoSummaryGeneration;
+
+    public static FirebaseAuth getAuth() {
+        return AuthHolder.INSTANCE;
+    }
+
+    public static FirebaseFirestore getFirestore() {
+        return FirestoreHolder.INSTANCE;
+    }
+
+    public static Executor getBackgroundExecutor() {
+        return BackgroundHolder.INSTANCE;
+    }
+
+    public static FirebaseFirestoreSettings defaultFirestoreSettings() {
+        // Persistent cache with LRU garbage collection once it grows past the cap
+        return new FirebaseFirestoreSettings.Builder()
+                .setLocalCacheSettings(PersistentCacheSettings.newBuilder()
+                        .setSizeBytes(Constants.FIRESTORE_CACHE_SIZE_BYTES)
+                        .build())
+                .build();
+    }
+
+    private static FirebaseFirestore createFirestore() {
+        FirebaseFirestore firestore = FirebaseFirestore.getInstance();
+        firestore.setFirestoreSettings(defaultFirestoreSettings());
+        return firestore;
+    }
 
     public static FirebaseUser getCurrentUser() {
-        return mAuth.getCurrentUser();
+        return getAuth().getCurrentUser();
     }
 
     public static void loginUser(String email, String password, OnCompleteListener<AuthResult> onCompleteListener) {
-        mAuth.signInWithEmailAndPassword(email, password)
+        getAuth().signInWithEmailAndPassword(email, password)
                 .addOnCompleteListener(onCompleteListener);
     }
 
     public static void registerUser(String email, String password, OnCompleteListener<AuthResult> onCompleteListener) {
-        mAuth.createUserWithEmailAndPassword(email, password)
+        getAuth().createUserWithEmailAndPassword(email, password)
                 .addOnCompleteListener(onCompleteListener);
     }
 
     public static void logoutUser() {
-        mAuth.signOut();
+        getAuth().signOut();
     }
 
     public static void saveUser(User user, OnCompleteListener<Void> onCompleteListener) {
-        db.collection(Constants.USERS_COLLECTION)
+        getFirestore().collection(Constants.USERS_COLLECTION)
                 .document(user.getUserId())
-                .set(user)
+                .set(UserCodec.toMap(user))
                 .addOnCompleteListener(onCompleteListener);
     }
 
-    public static void getUser(String userId, OnCompleteListener<DocumentSnapshot> onCompleteListener) {
-        db.collection(Constants.USERS_COLLECTION)
+    /**
+     * Loads a user, cache first: the listener gets the locally cached user right away when there
+     * is one, then again with the server copy. A failure is only reported when neither source
+     * produced the document, and a missing document is reported as NOT_FOUND.
+     */
+    public static void getUserCacheFirst(String userId, OnCompleteListener<User> onCompleteListener) {
+        Task<DocumentSnapshot> serverRead = takePrefetchedUser(userId);
+        if (serverRead == null) {
+            serverRead = fetchUser(userId);
+        }
+        Task<DocumentSnapshot> cacheRead = getFirestore().collection(Constants.USERS_COLLECTION)
                 .document(userId)
-                .get()
-                .addOnCompleteListener(onCompleteListener);
+                .get(Source.CACHE);
+        readCacheFirst(cacheRead.continueWith(getBackgroundExecutor(), FirebaseHelper::toUser),
+                serverRead.continueWith(getBackgroundExecutor(), FirebaseHelper::toUser),
+                onCompleteListener);
     }
 
-    public static void saveTodoItem(TodoItem todoItem, OnCompleteListener<Void> onCompleteListener) {
-        db.collection(Constants.TODOS_COLLECTION)
-                .document(todoItem.getId())
-                .set(todoItem)
-                .addOnCompleteListener(onCompleteListener);
+    /**
+     * Starts loading the user document ahead of the screen that needs it. The next
+     * {@link #getUserCacheFirst} for the same user picks up this load
+     * instead of starting another one.
+     */
+    public static void prefetchUser(String userId) {
+        synchronized (FirebaseHelper.class) {
+            prefetchedUserId = userId;
+            prefetchedUser = fetchUser(userId);
+        }
     }
 
-    public static void updateTodoItem(TodoItem todoItem, OnCompleteListener<Void> onCompleteListener) {
-        db.collection(Constants.TODOS_COLLECTION)
-                .document(todoItem.getId())
-                .set(todoItem)
-                .addOnCompleteListener(onCompleteListener);
+    private static synchronized Task<DocumentSnapshot> takePrefetchedUser(String userId) {
+        Task<DocumentSnapshot> load = userId.equals(prefetchedUserId) ? prefetchedUser : null;
+        prefetchedUserId = null;
+        prefetchedUser = null;
+        return load;
+    }
+
+    private static Task<DocumentSnapshot> fetchUser(String userId) {
+        return getFirestore().collection(Constants.USERS_COLLECTION)
+                .document(userId)
+                .get();
     }
 
-    public static void deleteTodoItem(String todoId, OnCompleteListener<Void> onCompleteListener) {
-        db.collection(Constants.TODOS_COLLECTION)
-                .document(todoId)
-                .delete()
+    /**
+     * Commits several writes to one user's todos as one atomic WriteBatch. Full documents in
+     * {@code sets} are written first, then the field-level {@code updates} are applied on top of them.
+     * Every written document gets the server's time as its updatedAt, whatever the caller set
+     * locally, since the change queries below follow that field.
+     */
+    public static void commitTodoBatch(String userId, Map<String, TodoItem> sets,
+                                       Map<String, Map<String, Object>> updates,
+                                       OnCompleteListener<Void> onCompleteListener) {
+        CollectionReference todos = userTodos(userId);
+        WriteBatch batch = getFirestore().batch();
+        for (Map.Entry<String, TodoItem> entry : sets.entrySet()) {
+            Map<String, Object> data = TodoItemCodec.toMap(entry.getValue());
+            data.put("updatedAt", FieldValue.serverTimestamp());
+            batch.set(todos.document(entry.getKey()), data);
+        }
+        for (Map.Entry<String, Map<String, Object>> entry : updates.entrySet()) {
+            Map<String, Object> fields = new HashMap<>(entry.getValue());
+            fields.put("updatedAt", FieldValue.serverTimestamp());
+            batch.update(todos.document(entry.getKey()), fields);
+        }
+        // Counts taken while the batch was on its way are stale once it lands
+        batch.commit()
+                .addOnCompleteListener(task -> invalidateTodoSummary())
                 .addOnCompleteListener(onCompleteListener);
     }
 
-    public static void getUserTodos(String userId, OnCompleteListener<QuerySnapshot> onCompleteListener) {
-        db.collection(Constants.TODOS_COLLECTION)
+    // Todos are stored under users/{userId}/todos, so queries never touch other users' documents
+    private static CollectionReference userTodos(String userId) {
+        return getFirestore().collection(Constants.USERS_COLLECTION)
+                .document(userId)
+                .collection(Constants.TODOS_COLLECTION);
+    }
+
+    /*
+     * Todos used to live in a top-level collection with a userId field. The two calls below let
+     * TodoMigration move a user's documents across one batch at a time.
+     */
+
+    // Read from the server only, so an offline cache never looks like a finished migration
+    public static Task<QuerySnapshot> getLegacyTodos(String userId, int limit) {
+        return getFirestore().collection(Constants.TODOS_COLLECTION)
                 .whereEqualTo("userId", userId)
+                .orderBy(FieldPath.documentId())
+                .limit(limit)
+                .get(Source.SERVER);
+    }
+
+    // Copies each document under the user and deletes the original in the same batch
+    public static Task<Void> moveLegacyTodos(String userId, List<DocumentSnapshot> documents) {
+        invalidateTodoSummary();
+        CollectionReference todos = userTodos(userId);
+        WriteBatch batch = getFirestore().batch();
+        for (DocumentSnapshot document : documents) {
+            Map<String, Object> data = document.getData();
+            if (data != null) {
+                batch.set(todos.document(document.getId()), data);
+            }
+            batch.delete(document.getReference());
+        }
+        return batch.commit();
+    }
+
+    private static User toUser(Task<DocumentSnapshot> task) throws Exception {
+        if (!task.isSuccessful()) {
+            throw task.getException();
+        }
+        User user = UserCodec.fromMap(readData(task.getResult()));
+        if (user == null) {
+            throw new FirebaseFirestoreException("User document missing", FirebaseFirestoreException.Code.NOT_FOUND);
+        }
+        return user;
+    }
+
+    // Returns null for a missing document; documents written without an id field use the document id
+    public static TodoItem toTodoItem(DocumentSnapshot document) {
+        Map<String, Object> data = readData(document);
+        if (data != null && !(data.get("id") instanceof String)) {
+            data.put("id", document.getId());
+        }
+        return TodoItemCodec.fromMap(data);
+    }
+
+    /*
+     * The document's fields in the form the codecs read, or null if it does not exist. Server
+     * timestamps become Dates, and one the server has not assigned yet reads as the device's
+     * estimate.
+     */
+    private static Map<String, Object> readData(DocumentSnapshot document) {
+        Map<String, Object> data = document.getData(DocumentSnapshot.ServerTimestampBehavior.ESTIMATE);
+        if (data == null) {
+            return null;
+        }
+        for (Map.Entry<String, Object> field : data.entrySet()) {
+            if (field.getValue() instanceof Timestamp) {
+                field.setValue(((Timestamp) field.getValue()).toDate());
+            }
+        }
+        return data;
+    }
+
+    // Both reads are already running; listeners are delivered on the main thread, in order
+    private static <T> void readCacheFirst(Task<T> cacheRead, Task<T> serverRead, OnCompleteListener<T> onCompleteListener) {
+        cacheRead.addOnCompleteListener(cacheTask -> {
+            if (serverRead.isComplete() && (serverRead.isSuccessful() || !cacheTask.isSuccessful())) {
+                // The server result has been or is about to be delivered
+                return;
+            }
+            if (cacheTask.isSuccessful()) {
+                onCompleteListener.onComplete(cacheTask);
+            }
+        });
+        serverRead.addOnCompleteListener(serverTask -> {
+            if (serverTask.isSuccessful()) {
+                onCompleteListener.onComplete(serverTask);
+            } else {
+                // Only surface the failure if the cache had nothing either
+                cacheRead.addOnCompleteListener(cacheTask -> {
+                    if (!cacheTask.isSuccessful()) {
+                        onCompleteListener.onComplete(serverTask);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Counts a user's tasks with server-side aggregation instead of downloading them. Results
+     * are cached briefly and dropped whenever a todo is changed.
+     */
+    public static void getTodoSummary(String userId, OnCompleteListener<TodoSummary> onCompleteListener) {
+        TodoSummary cached = todoSummaryCache.get(userId);
+        if (cached != null && System.currentTimeMillis() - cached.getFetchedAt() < TODO_SUMMARY_TTL_MS) {
+            Tasks.forResult(cached).addOnCompleteListener(onCompleteListener);
+            return;
+        }
+
+        int generation = todoSummaryGeneration;
+        Query userTodos = userTodos(userId);
+        Task<AggregateQuerySnapshot> totalTask = userTodos.count().get(AggregateSource.SERVER);
+        Task<AggregateQuerySnapshot> deletedTask = userTodos.whereEqualTo("deleted", true)
+                .count().get(AggregateSource.SERVER);
+        Task<AggregateQuerySnapshot> pendingTask = userTodos.whereEqualTo("completed", false)
+                .count().get(AggregateSource.SERVER);
+
+        Tasks.whenAll(totalTask, deletedTask, pendingTask)
+                .continueWith(getBackgroundExecutor(), task -> {
+                    if (!task.isSuccessful()) {
+                        throw task.getException();
+                    }
+                    TodoSummary summary = new TodoSummary(
+                            totalTask.getResult().getCount() - deletedTask.getResult().getCount(),
+                            pendingTask.getResult().getCount());
+                    // A write that landed while counting makes this result stale already
+                    if (generation == todoSummaryGeneration) {
+                        todoSummaryCache.put(userId, summary);
+                    }
+                    return summary;
+                })
+                .addOnCompleteListener(onCompleteListener);
+    }
+
+    // Called when a todo is added, toggled or deleted, before its write is even queued, so the next count is fresh
+    public static void invalidateTodoSummary() {
+        todoSummaryGeneration++;
+        todoSummaryCache.clear();
+    }
+
+    /**
+     * One page of a user's todos in (createdAt, id) DESC order, starting after the given key, or
+     * at the newest todo when {@code afterId} is null. Read from the server only, since a page
+     * served from a partial cache would look like the end of the history.
+     */
+    public static void getUserTodosPage(String userId, long afterCreatedAt, String afterId, int limit,
+                                        Executor executor, OnCompleteListener<QuerySnapshot> onCompleteListener) {
+        Query query = userTodos(userId)
                 .orderBy("createdAt", Query.Direction.DESCENDING)
+                .orderBy(FieldPath.documentId(), Query.Direction.DESCENDING)
+                .limit(limit);
+        if (afterId != null) {
+            query = query.startAfter(afterCreatedAt, afterId);
+        }
+        query.get(Source.SERVER).addOnCompleteListener(executor, onCompleteListener);
+    }
+
+    /*
+     * The change queries below call back on the caller's executor rather than the main thread,
+     * so the snapshot can be processed in the same place its results are stored. They follow the
+     * server-assigned updatedAt, in epoch millis. A range filter only matches values of its own
+     * type, so documents still carrying the old device-clock millis never match them.
+     */
+
+    // The newest server-stamped todo, or none if the user has never written one
+    public static void getLatestTodoUpdate(String userId, Executor executor,
+                                           OnCompleteListener<QuerySnapshot> onCompleteListener) {
+        todosUpdatedSinceQuery(userId, 0L)
+                .orderBy("updatedAt", Query.Direction.DESCENDING)
+                .limit(1)
+                .get(Source.SERVER)
+                .addOnCompleteListener(executor, onCompleteListener);
+    }
+
+    public static void getUserTodosUpdatedSince(String userId, long updatedFrom, Executor executor,
+                                                OnCompleteListener<QuerySnapshot> onCompleteListener) {
+        todosUpdatedSinceQuery(userId, updatedFrom)
+                .orderBy("updatedAt", Query.Direction.ASCENDING)
                 .get()
-                .addOnCompleteListener(onCompleteListener);
+                .addOnCompleteListener(executor, onCompleteListener);
+    }
+
+    public static ListenerRegistration listenToUserTodoChanges(Activity activity, String userId, long updatedFrom,
+                                                               Executor executor,
+                                                               EventListener<QuerySnapshot> eventListener) {
+        SnapshotListenOptions options = new SnapshotListenOptions.Builder()
+                .setActivity(activity)
+                .setExecutor(executor)
+                .build();
+        return todosUpdatedSinceQuery(userId, updatedFrom)
+                .orderBy("updatedAt", Query.Direction.ASCENDING)
+                .addSnapshotListener(options, eventListener);
+    }
+
+    // Inclusive, so a write sharing the watermark's millisecond with one already seen is not skipped
+    private static Query todosUpdatedSinceQuery(String userId, long updatedFrom) {
+        return userTodos(userId)
+                .whereGreaterThanOrEqualTo("updatedAt", new Timestamp(new Date(updatedFrom)));
     }
 }
\ No newline at end of file
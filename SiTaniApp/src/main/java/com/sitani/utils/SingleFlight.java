@@ -0,0 +1,61 @@
+package com.sitani.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collapses concurrent requests for the same key into one. The first caller starts the work,
+ * callers arriving while it is in flight are queued behind it, and all of them receive the
+ * same result. Callbacks run on whichever thread completes the work.
+ */
+public class SingleFlight<T> {
+
+    public interface Callback<T> {
+        void onSuccess(T result);
+        void onError(Throwable t);
+    }
+
+    public interface Work<T> {
+        void start(Callback<T> done);
+    }
+
+    private final Map<String, List<Callback<T>>> inFlight = new HashMap<>();
+
+    public void run(String key, Work<T> work, Callback<T> callback) {
+        synchronized (inFlight) {
+            List<Callback<T>> waiting = inFlight.get(key);
+            if (waiting != null) {
+                waiting.add(callback);
+                return;
+            }
+            waiting = new ArrayList<>();
+            waiting.add(callback);
+            inFlight.put(key, waiting);
+        }
+
+        work.start(new Callback<T>() {
+            @Override
+            public void onSuccess(T result) {
+                for (Callback<T> subscriber : complete(key)) {
+                    subscriber.onSuccess(result);
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                for (Callback<T> subscriber : complete(key)) {
+                    subscriber.onError(t);
+                }
+            }
+        });
+    }
+
+    private List<Callback<T>> complete(String key) {
+        synchronized (inFlight) {
+            List<Callback<T>> waiting = inFlight.remove(key);
+            return waiting != null ? waiting : new ArrayList<Callback<T>>();
+        }
+    }
+}
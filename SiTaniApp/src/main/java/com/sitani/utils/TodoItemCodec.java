@@ -0,0 +1,77 @@
+package com.sitani.utils;
+
+import com.sitani.models.TodoItem;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads and writes todo documents field by field instead of through Firestore's reflective
+ * class mapper. Field names are the ones the mapper derived from the getters, so documents
+ * written either way stay readable by both. Works on plain field maps, with timestamps as
+ * Dates; {@link FirebaseHelper#toTodoItem} converts snapshots into that form.
+ */
+public final class TodoItemCodec {
+
+    private TodoItemCodec() {
+    }
+
+    // Returns null for a missing document, like toObject
+    public static TodoItem fromMap(Map<String, Object> data) {
+        if (data == null) {
+            return null;
+        }
+        TodoItem todoItem = new TodoItem();
+        String id = getString(data, "id");
+        if (id != null) {
+            todoItem.setId(id);
+        }
+        todoItem.setTitle(getString(data, "title"));
+        todoItem.setDescription(getString(data, "description"));
+        todoItem.setCompleted(getBoolean(data, "completed"));
+        todoItem.setCreatedAt(getLong(data, "createdAt"));
+        todoItem.setUpdatedAt(getMillis(data, "updatedAt"));
+        todoItem.setDeleted(getBoolean(data, "deleted"));
+        todoItem.setUserId(getString(data, "userId"));
+        return todoItem;
+    }
+
+    public static Map<String, Object> toMap(TodoItem todoItem) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("id", todoItem.getId());
+        data.put("title", todoItem.getTitle());
+        data.put("description", todoItem.getDescription());
+        data.put("completed", todoItem.isCompleted());
+        data.put("createdAt", todoItem.getCreatedAt());
+        data.put("updatedAt", todoItem.getUpdatedAt());
+        data.put("deleted", todoItem.isDeleted());
+        data.put("userId", todoItem.getUserId());
+        return data;
+    }
+
+    // Absent fields keep the primitive defaults, as they would with the class mapper
+    private static String getString(Map<String, Object> data, String field) {
+        Object value = data.get(field);
+        return value instanceof String ? (String) value : null;
+    }
+
+    private static boolean getBoolean(Map<String, Object> data, String field) {
+        Object value = data.get(field);
+        return value instanceof Boolean && (Boolean) value;
+    }
+
+    private static long getLong(Map<String, Object> data, String field) {
+        Object value = data.get(field);
+        return value instanceof Number ? ((Number) value).longValue() : 0L;
+    }
+
+    // Server timestamps, or plain millis in documents written before updatedAt was server-assigned
+    private static long getMillis(Map<String, Object> data, String field) {
+        Object value = data.get(field);
+        if (value instanceof Date) {
+            return ((Date) value).getTime();
+        }
+        return value instanceof Number ? ((Number) value).longValue() : 0L;
+    }
+}
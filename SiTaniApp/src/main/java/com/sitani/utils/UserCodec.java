@@ -0,0 +1,81 @@
+package com.sitani.utils;
+
+import com.sitani.models.FarmField;
+import com.sitani.models.User;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Field-by-field counterpart of {@link TodoItemCodec} for user documents. Farm fields are
+ * stored as a list of maps, the same shape the class mapper wrote for them.
+ */
+public final class UserCodec {
+
+    private UserCodec() {
+    }
+
+    // Returns null for a missing document
+    public static User fromMap(Map<String, Object> data) {
+        if (data == null) {
+            return null;
+        }
+        User user = new User();
+        user.setUserId(readString(data.get("userId")));
+        user.setName(readString(data.get("name")));
+        user.setEmail(readString(data.get("email")));
+        user.setPhone(readString(data.get("phone")));
+        user.setAddress(readString(data.get("address")));
+        Object createdAt = data.get("createdAt");
+        user.setCreatedAt(createdAt instanceof Number ? ((Number) createdAt).longValue() : 0L);
+        user.setFields(readFields(data.get("fields")));
+        return user;
+    }
+
+    public static Map<String, Object> toMap(User user) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("userId", user.getUserId());
+        data.put("name", user.getName());
+        data.put("email", user.getEmail());
+        data.put("phone", user.getPhone());
+        data.put("address", user.getAddress());
+        data.put("createdAt", user.getCreatedAt());
+
+        List<Map<String, Object>> fields = new ArrayList<>(user.getFields().size());
+        for (FarmField field : user.getFields()) {
+            Map<String, Object> fieldData = new HashMap<>();
+            fieldData.put("name", field.getName());
+            fieldData.put("latitude", field.getLatitude());
+            fieldData.put("longitude", field.getLongitude());
+            fields.add(fieldData);
+        }
+        data.put("fields", fields);
+        return data;
+    }
+
+    private static List<FarmField> readFields(Object value) {
+        List<FarmField> fields = new ArrayList<>();
+        if (!(value instanceof List)) {
+            return fields;
+        }
+        for (Object item : (List<?>) value) {
+            if (item instanceof Map) {
+                Map<?, ?> fieldData = (Map<?, ?>) item;
+                fields.add(new FarmField(readString(fieldData.get("name")),
+                        readDouble(fieldData.get("latitude")), readDouble(fieldData.get("longitude"))));
+            }
+        }
+        return fields;
+    }
+
+    private static String readString(Object value) {
+        return value instanceof String ? (String) value : null;
+    }
+
+    // Whole-number coordinates may come back as Long
+    private static double readDouble(Object value) {
+        return value instanceof Number ? ((Number) value).doubleValue() : 0d;
+    }
+}
@@ -1,22 +1,92 @@
 package com.sitani.utils;
 
+import android.content.Context;
+
+import com.google.gson.Gson;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Cache;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Response;
 import retrofit2.Retrofit;
 import retrofit2.converter.gson.GsonConverterFactory;
 
 public class WeatherApiClient {
-    private static Retrofit retrofit = null;
+    private static final Gson GSON = WeatherTypeAdapters.createGson();
+    private static volatile Retrofit retrofit;
+    private static volatile WeatherApiService weatherService;
 
-    public static Retrofit getClient() {
+    public static Retrofit getClient(Context context) {
         if (retrofit == null) {
-            retrofit = new Retrofit.Builder()
-                    .baseUrl(Constants.OPENWEATHER_API_BASE_URL)
-                    .addConverterFactory(GsonConverterFactory.create())
-                    .build();
+            synchronized (WeatherApiClient.class) {
+                if (retrofit == null) {
+                    retrofit = createRetrofit(new File(context.getCacheDir(), Constants.HTTP_CACHE_DIR),
+                            Constants.OPENWEATHER_API_BASE_URL);
+                }
+            }
         }
         return retrofit;
     }
 
-    public static WeatherApiService getWeatherService() {
-        return getClient().create(WeatherApiService.class);
+    // Shared so the weather type adapters are registered once for the API and the disk cache
+    public static Gson getGson() {
+        return GSON;
+    }
+
+    public static WeatherApiService getWeatherService(Context context) {
+        if (weatherService == null) {
+            synchronized (WeatherApiClient.class) {
+                if (weatherService == null) {
+                    weatherService = getClient(context).create(WeatherApiService.class);
+                }
+            }
+        }
+        return weatherService;
+    }
+
+    // Plain arguments instead of a Context, so tests can use a temporary cache and a local server
+    static Retrofit createRetrofit(File cacheDir, String baseUrl) {
+        return new Retrofit.Builder()
+                .baseUrl(baseUrl)
+                .client(createHttpClient(cacheDir))
+                .addConverterFactory(GsonConverterFactory.create(GSON))
+                .build();
+    }
+
+    // OkHttp already negotiates gzip and revalidates cached entries with ETag/Last-Modified
+    static OkHttpClient createHttpClient(File cacheDir) {
+        // Every call goes to the same host, so this caps how many weather requests run at once
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequestsPerHost(Constants.HTTP_MAX_CONCURRENT_REQUESTS);
+        return new OkHttpClient.Builder()
+                .cache(new Cache(cacheDir, Constants.HTTP_CACHE_SIZE_BYTES))
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(5, 5, TimeUnit.MINUTES))
+                .connectTimeout(Constants.HTTP_CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .readTimeout(Constants.HTTP_READ_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .callTimeout(Constants.HTTP_CALL_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .retryOnConnectionFailure(true)
+                .addNetworkInterceptor(new DefaultCacheControlInterceptor())
+                .build();
+    }
+
+    static class DefaultCacheControlInterceptor implements Interceptor {
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            Response response = chain.proceed(chain.request());
+            if (!response.isSuccessful() || response.header("Cache-Control") != null) {
+                return response;
+            }
+            return response.newBuilder()
+                    .removeHeader("Pragma")
+                    .header("Cache-Control", "public, max-age=" + Constants.HTTP_DEFAULT_MAX_AGE_SECONDS)
+                    .build();
+        }
     }
-}
\ No newline at end of file
+}
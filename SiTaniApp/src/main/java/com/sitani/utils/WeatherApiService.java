@@ -1,5 +1,6 @@
 package com.sitani.utils;
 
+import com.sitani.models.ForecastResponse;
 import com.sitani.models.WeatherResponse;
 import retrofit2.Call;
 import retrofit2.http.GET;
@@ -20,4 +21,12 @@ public interface WeatherApiService {
             @Query("appid") String apiKey,
             @Query("units") String units
     );
+
+    @GET("forecast")
+    Call<ForecastResponse> getForecast(
+            @Query("lat") double latitude,
+            @Query("lon") double longitude,
+            @Query("appid") String apiKey,
+            @Query("units") String units
+    );
 }
\ No newline at end of file
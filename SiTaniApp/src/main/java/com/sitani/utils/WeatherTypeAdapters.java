@@ -0,0 +1,364 @@
+package com.sitani.utils;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.sitani.models.ForecastResponse;
+import com.sitani.models.WeatherResponse;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming adapters for the OpenWeather payloads. They read the fields declared on the models
+ * straight off the token stream and skip everything else, without reflection or intermediate
+ * trees. Writing produces the same shape, so cached responses read back through the same path.
+ */
+public final class WeatherTypeAdapters {
+
+    private WeatherTypeAdapters() {
+    }
+
+    public static Gson createGson() {
+        return new GsonBuilder()
+                .registerTypeAdapter(WeatherResponse.class, new WeatherResponseAdapter().nullSafe())
+                .registerTypeAdapter(ForecastResponse.class, new ForecastResponseAdapter().nullSafe())
+                .create();
+    }
+
+    static final class WeatherResponseAdapter extends TypeAdapter<WeatherResponse> {
+        @Override
+        public WeatherResponse read(JsonReader in) throws IOException {
+            WeatherResponse response = new WeatherResponse();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.skipValue();
+                    continue;
+                }
+                switch (name) {
+                    case "coord":
+                        response.setCoord(readCoordinates(in));
+                        break;
+                    case "weather":
+                        response.setWeather(readConditions(in));
+                        break;
+                    case "main":
+                        response.setMain(readMain(in));
+                        break;
+                    case "wind":
+                        response.setWind(readWind(in));
+                        break;
+                    case "name":
+                        response.setName(in.nextString());
+                        break;
+                    case "dt":
+                        response.setTimestamp(in.nextLong());
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return response;
+        }
+
+        @Override
+        public void write(JsonWriter out, WeatherResponse response) throws IOException {
+            out.beginObject();
+            if (response.getCoord() != null) {
+                out.name("coord").beginObject();
+                out.name("lat").value(response.getCoord().getLat());
+                out.name("lon").value(response.getCoord().getLon());
+                out.endObject();
+            }
+            if (response.getWeather() != null) {
+                out.name("weather").beginArray();
+                for (WeatherResponse.Weather condition : response.getWeather()) {
+                    out.beginObject();
+                    out.name("id").value(condition.getId());
+                    out.name("main").value(condition.getMain());
+                    out.name("description").value(condition.getDescription());
+                    out.name("icon").value(condition.getIcon());
+                    out.endObject();
+                }
+                out.endArray();
+            }
+            if (response.getMain() != null) {
+                out.name("main");
+                writeMain(out, response.getMain());
+            }
+            if (response.getWind() != null) {
+                out.name("wind");
+                writeWind(out, response.getWind());
+            }
+            out.name("name").value(response.getName());
+            out.name("dt").value(response.getTimestamp());
+            out.endObject();
+        }
+    }
+
+    static final class ForecastResponseAdapter extends TypeAdapter<ForecastResponse> {
+        @Override
+        public ForecastResponse read(JsonReader in) throws IOException {
+            ForecastResponse response = new ForecastResponse();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.skipValue();
+                    continue;
+                }
+                switch (name) {
+                    case "list":
+                        response.setList(readEntries(in));
+                        break;
+                    case "city":
+                        response.setCity(readCity(in));
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            return response;
+        }
+
+        @Override
+        public void write(JsonWriter out, ForecastResponse response) throws IOException {
+            out.beginObject();
+            if (response.getList() != null) {
+                out.name("list").beginArray();
+                for (ForecastResponse.Entry entry : response.getList()) {
+                    out.beginObject();
+                    out.name("dt").value(entry.getTimestamp());
+                    if (entry.getMain() != null) {
+                        out.name("main");
+                        writeMain(out, entry.getMain());
+                    }
+                    if (entry.getWind() != null) {
+                        out.name("wind");
+                        writeWind(out, entry.getWind());
+                    }
+                    if (entry.getRain() != null) {
+                        out.name("rain").beginObject();
+                        out.name("3h").value(entry.getRain().getThreeHours());
+                        out.endObject();
+                    }
+                    out.endObject();
+                }
+                out.endArray();
+            }
+            if (response.getCity() != null) {
+                out.name("city").beginObject();
+                out.name("name").value(response.getCity().getName());
+                out.endObject();
+            }
+            out.endObject();
+        }
+    }
+
+    // A null object reads as null, as it did with reflective Gson
+    private static WeatherResponse.Coordinates readCoordinates(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        WeatherResponse.Coordinates coordinates = new WeatherResponse.Coordinates();
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.skipValue();
+            } else if (name.equals("lat")) {
+                coordinates.setLat(in.nextDouble());
+            } else if (name.equals("lon")) {
+                coordinates.setLon(in.nextDouble());
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return coordinates;
+    }
+
+    private static WeatherResponse.Weather[] readConditions(JsonReader in) throws IOException {
+        List<WeatherResponse.Weather> conditions = new ArrayList<>(1);
+        in.beginArray();
+        while (in.hasNext()) {
+            WeatherResponse.Weather condition = new WeatherResponse.Weather();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.skipValue();
+                    continue;
+                }
+                switch (name) {
+                    case "id":
+                        condition.setId(in.nextInt());
+                        break;
+                    case "main":
+                        condition.setMain(in.nextString());
+                        break;
+                    case "description":
+                        condition.setDescription(in.nextString());
+                        break;
+                    case "icon":
+                        condition.setIcon(in.nextString());
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            conditions.add(condition);
+        }
+        in.endArray();
+        return conditions.toArray(new WeatherResponse.Weather[0]);
+    }
+
+    private static WeatherResponse.Main readMain(JsonReader in) throws IOException {
+        WeatherResponse.Main main = new WeatherResponse.Main();
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.skipValue();
+                continue;
+            }
+            switch (name) {
+                case "temp":
+                    main.setTemp(in.nextDouble());
+                    break;
+                case "humidity":
+                    main.setHumidity(in.nextInt());
+                    break;
+                case "pressure":
+                    main.setPressure(in.nextDouble());
+                    break;
+                case "temp_min":
+                    main.setTempMin(in.nextDouble());
+                    break;
+                case "temp_max":
+                    main.setTempMax(in.nextDouble());
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        return main;
+    }
+
+    private static void writeMain(JsonWriter out, WeatherResponse.Main main) throws IOException {
+        out.beginObject();
+        out.name("temp").value(main.getTemp());
+        out.name("humidity").value(main.getHumidity());
+        out.name("pressure").value(main.getPressure());
+        out.name("temp_min").value(main.getTempMin());
+        out.name("temp_max").value(main.getTempMax());
+        out.endObject();
+    }
+
+    private static WeatherResponse.Wind readWind(JsonReader in) throws IOException {
+        WeatherResponse.Wind wind = new WeatherResponse.Wind();
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.skipValue();
+            } else if (name.equals("speed")) {
+                wind.setSpeed(in.nextDouble());
+            } else if (name.equals("deg")) {
+                wind.setDeg(in.nextDouble());
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return wind;
+    }
+
+    private static void writeWind(JsonWriter out, WeatherResponse.Wind wind) throws IOException {
+        out.beginObject();
+        out.name("speed").value(wind.getSpeed());
+        out.name("deg").value(wind.getDeg());
+        out.endObject();
+    }
+
+    private static List<ForecastResponse.Entry> readEntries(JsonReader in) throws IOException {
+        // The 5-day forecast is 40 three-hour steps
+        List<ForecastResponse.Entry> entries = new ArrayList<>(40);
+        in.beginArray();
+        while (in.hasNext()) {
+            ForecastResponse.Entry entry = new ForecastResponse.Entry();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.skipValue();
+                    continue;
+                }
+                switch (name) {
+                    case "dt":
+                        entry.setTimestamp(in.nextLong());
+                        break;
+                    case "main":
+                        entry.setMain(readMain(in));
+                        break;
+                    case "wind":
+                        entry.setWind(readWind(in));
+                        break;
+                    case "rain":
+                        entry.setRain(readPrecipitation(in));
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+            entries.add(entry);
+        }
+        in.endArray();
+        return entries;
+    }
+
+    private static ForecastResponse.Precipitation readPrecipitation(JsonReader in) throws IOException {
+        ForecastResponse.Precipitation precipitation = new ForecastResponse.Precipitation();
+        in.beginObject();
+        while (in.hasNext()) {
+            if (in.nextName().equals("3h") && in.peek() != JsonToken.NULL) {
+                precipitation.setThreeHours(in.nextDouble());
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return precipitation;
+    }
+
+    private static ForecastResponse.City readCity(JsonReader in) throws IOException {
+        ForecastResponse.City city = new ForecastResponse.City();
+        in.beginObject();
+        while (in.hasNext()) {
+            if (in.nextName().equals("name") && in.peek() != JsonToken.NULL) {
+                city.setName(in.nextString());
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return city;
+    }
+}
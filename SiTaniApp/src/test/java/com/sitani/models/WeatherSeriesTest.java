@@ -0,0 +1,72 @@
+package com.sitani.models;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class WeatherSeriesTest {
+    // 06:00 UTC; steps follow every three hours
+    private static final long FIRST_STEP = 1_718_000_000_000L - 1_718_000_000_000L % TimeUnit.DAYS.toMillis(1)
+            + TimeUnit.HOURS.toMillis(6);
+    private static final long STEP = TimeUnit.HOURS.toMillis(3);
+
+    @Test
+    public void windowStartingMidStepIncludesThatStep() {
+        // Rain 1, 2, 4, 8, ... and wind 10, 20, 30, ... per step
+        WeatherSeries series = series(10);
+        long eightAm = FIRST_STEP + TimeUnit.HOURS.toMillis(2);
+
+        assertEquals(0, series.indexOfStepAt(eightAm));
+        // 06:00 to 09:00 is under way at 08:00; the window ends before the 18:00 step
+        assertEquals(1f + 2f + 4f + 8f, series.totalRain(eightAm, eightAm + TimeUnit.HOURS.toMillis(10)), 0f);
+        assertEquals(40f, series.maxWindSpeed(eightAm, eightAm + TimeUnit.HOURS.toMillis(10)), 0f);
+    }
+
+    @Test
+    public void windowStartingOnStepBoundaryStartsThere() {
+        WeatherSeries series = series(10);
+
+        assertEquals(1, series.indexOfStepAt(FIRST_STEP + STEP));
+        assertEquals(2f + 4f, series.totalRain(FIRST_STEP + STEP, FIRST_STEP + 3 * STEP), 0f);
+    }
+
+    @Test
+    public void windowBeforeFirstStepStartsAtFirstStep() {
+        WeatherSeries series = series(4);
+
+        assertEquals(0, series.indexOfStepAt(FIRST_STEP - TimeUnit.HOURS.toMillis(1)));
+        assertEquals(1f + 2f, series.totalRain(FIRST_STEP - TimeUnit.HOURS.toMillis(1), FIRST_STEP + 2 * STEP), 0f);
+    }
+
+    @Test
+    public void windowAfterLastStepIsEmpty() {
+        WeatherSeries series = series(4);
+        long afterLastStep = FIRST_STEP + 4 * STEP + TimeUnit.HOURS.toMillis(1);
+
+        assertEquals(4, series.indexOfStepAt(afterLastStep));
+        assertEquals(0f, series.totalRain(afterLastStep, afterLastStep + TimeUnit.DAYS.toMillis(1)), 0f);
+        assertEquals(0f, series.maxWindSpeed(afterLastStep, afterLastStep + TimeUnit.DAYS.toMillis(1)), 0f);
+    }
+
+    private static WeatherSeries series(int steps) {
+        List<ForecastResponse.Entry> entries = new ArrayList<>();
+        for (int i = 0; i < steps; i++) {
+            ForecastResponse.Entry entry = new ForecastResponse.Entry();
+            entry.setTimestamp((FIRST_STEP + i * STEP) / 1000L);
+            ForecastResponse.Precipitation rain = new ForecastResponse.Precipitation();
+            rain.setThreeHours(1 << i);
+            entry.setRain(rain);
+            WeatherResponse.Wind wind = new WeatherResponse.Wind();
+            wind.setSpeed(10 * (i + 1));
+            entry.setWind(wind);
+            entries.add(entry);
+        }
+        ForecastResponse forecast = new ForecastResponse();
+        forecast.setList(entries);
+        return WeatherSeries.fromForecast(forecast, FIRST_STEP);
+    }
+}
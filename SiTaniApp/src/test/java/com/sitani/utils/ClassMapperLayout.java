@@ -0,0 +1,141 @@
+package com.sitani.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stand-in for Firestore's reflective class mapper, so the codecs can be checked against the
+ * document layout it wrote and the objects {@code toObject} built. Like the mapper, it takes
+ * field names from the getter/setter pairs and maps nested model classes to nested maps.
+ */
+final class ClassMapperLayout {
+
+    private ClassMapperLayout() {
+    }
+
+    // What set(model) stored
+    static Map<String, Object> write(Object bean) {
+        Map<String, Object> data = new HashMap<>();
+        for (PropertyDescriptor property : properties(bean.getClass())) {
+            data.put(property.getName(), writeValue(invoke(property.getReadMethod(), bean)));
+        }
+        return data;
+    }
+
+    // What toObject(type) returned; fields with no matching setter are ignored, as they were
+    static <T> T read(Map<String, Object> data, Class<T> type) {
+        T bean = newInstance(type);
+        for (PropertyDescriptor property : properties(type)) {
+            if (!data.containsKey(property.getName())) {
+                continue;
+            }
+            Method setter = property.getWriteMethod();
+            Object value = readValue(data.get(property.getName()), setter.getGenericParameterTypes()[0]);
+            invoke(setter, bean, value);
+        }
+        return bean;
+    }
+
+    static void assertSameProperties(Object expected, Object actual) {
+        assertEquals(expected.getClass(), actual.getClass());
+        for (PropertyDescriptor property : properties(expected.getClass())) {
+            Object expectedValue = invoke(property.getReadMethod(), expected);
+            Object actualValue = invoke(property.getReadMethod(), actual);
+            if (expectedValue instanceof List && actualValue instanceof List) {
+                List<?> expectedItems = (List<?>) expectedValue;
+                List<?> actualItems = (List<?>) actualValue;
+                assertEquals(property.getName(), expectedItems.size(), actualItems.size());
+                for (int i = 0; i < expectedItems.size(); i++) {
+                    assertSameProperties(expectedItems.get(i), actualItems.get(i));
+                }
+            } else {
+                assertEquals(property.getName(), expectedValue, actualValue);
+            }
+        }
+    }
+
+    private static Object writeValue(Object value) {
+        if (value instanceof List) {
+            List<Object> items = new ArrayList<>();
+            for (Object item : (List<?>) value) {
+                items.add(writeValue(item));
+            }
+            return items;
+        }
+        return isModel(value) ? write(value) : value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object readValue(Object value, Type type) {
+        if (value == null) {
+            return null;
+        }
+        if (type instanceof ParameterizedType) {
+            Type itemType = ((ParameterizedType) type).getActualTypeArguments()[0];
+            List<Object> items = new ArrayList<>();
+            for (Object item : (List<?>) value) {
+                items.add(readValue(item, itemType));
+            }
+            return items;
+        }
+        Class<?> target = (Class<?>) type;
+        if (target == long.class) {
+            return ((Number) value).longValue();
+        }
+        if (target == double.class) {
+            return ((Number) value).doubleValue();
+        }
+        if (value instanceof Map && isModel(target)) {
+            return read((Map<String, Object>) value, target);
+        }
+        return value;
+    }
+
+    private static boolean isModel(Object value) {
+        return value != null && isModel(value.getClass());
+    }
+
+    private static boolean isModel(Class<?> type) {
+        return type.getName().startsWith("com.sitani.models.");
+    }
+
+    private static List<PropertyDescriptor> properties(Class<?> type) {
+        try {
+            List<PropertyDescriptor> properties = new ArrayList<>();
+            for (PropertyDescriptor property : Introspector.getBeanInfo(type, Object.class).getPropertyDescriptors()) {
+                if (property.getReadMethod() != null && property.getWriteMethod() != null) {
+                    properties.add(property);
+                }
+            }
+            return properties;
+        } catch (IntrospectionException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static <T> T newInstance(Class<T> type) {
+        try {
+            return type.getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static Object invoke(Method method, Object target, Object... args) {
+        try {
+            return method.invoke(target, args);
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.sitani.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+public class SingleFlightTest {
+    private static final int CALLERS = 50;
+
+    private MockWebServer server;
+    private OkHttpClient client;
+    // Holds the server's response until every caller has joined, so none can arrive after it completes
+    private CountDownLatch allJoined;
+
+    @Before
+    public void setUp() throws IOException {
+        allJoined = new CountDownLatch(CALLERS);
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                allJoined.await(10, TimeUnit.SECONDS);
+                if (request.getPath().startsWith("/fail")) {
+                    return new MockResponse().setResponseCode(500);
+                }
+                return new MockResponse().setBody(request.getPath());
+            }
+        });
+        server.start();
+        client = new OkHttpClient();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void simultaneousCallersShareOneRequest() throws InterruptedException {
+        SingleFlight<String> flights = new SingleFlight<>();
+        List<Object> results = runConcurrently(flights, "/weather");
+
+        assertEquals(1, server.getRequestCount());
+        assertEquals(CALLERS, results.size());
+        for (Object result : results) {
+            assertEquals("/weather", result);
+        }
+    }
+
+    @Test
+    public void failureReachesEveryCaller() throws InterruptedException {
+        SingleFlight<String> flights = new SingleFlight<>();
+        List<Object> results = runConcurrently(flights, "/fail");
+
+        assertEquals(1, server.getRequestCount());
+        assertEquals(CALLERS, results.size());
+        for (Object result : results) {
+            assertTrue(result instanceof IOException);
+        }
+    }
+
+    @Test
+    public void callerAfterCompletionStartsNewRequest() throws InterruptedException {
+        SingleFlight<String> flights = new SingleFlight<>();
+        runConcurrently(flights, "/weather");
+        allJoined = new CountDownLatch(0);
+
+        CountDownLatch finished = new CountDownLatch(1);
+        flights.run("/weather", work("/weather"), collect(new ArrayList<>(), finished));
+
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+        assertEquals(2, server.getRequestCount());
+    }
+
+    // Starts CALLERS threads that call run() on the same key at once; returns what each one received
+    private List<Object> runConcurrently(SingleFlight<String> flights, String path) throws InterruptedException {
+        List<Object> results = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(CALLERS);
+        for (int i = 0; i < CALLERS; i++) {
+            new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                flights.run(path, work(path), collect(results, finished));
+                allJoined.countDown();
+            }).start();
+        }
+        start.countDown();
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+        return results;
+    }
+
+    private SingleFlight.Work<String> work(String path) {
+        return done -> client.newCall(new Request.Builder().url(server.url(path)).build())
+                .enqueue(new okhttp3.Callback() {
+                    @Override
+                    public void onResponse(Call call, Response response) throws IOException {
+                        try {
+                            if (response.isSuccessful()) {
+                                done.onSuccess(response.body().string());
+                            } else {
+                                done.onError(new IOException("HTTP " + response.code()));
+                            }
+                        } finally {
+                            response.close();
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(Call call, IOException e) {
+                        done.onError(e);
+                    }
+                });
+    }
+
+    private static SingleFlight.Callback<String> collect(List<Object> results, CountDownLatch finished) {
+        return new SingleFlight.Callback<String>() {
+            @Override
+            public void onSuccess(String result) {
+                results.add(result);
+                finished.countDown();
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                results.add(t);
+                finished.countDown();
+            }
+        };
+    }
+}
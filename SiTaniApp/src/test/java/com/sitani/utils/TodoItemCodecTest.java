@@ -0,0 +1,143 @@
+package com.sitani.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.sitani.models.TodoItem;
+
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+public class TodoItemCodecTest {
+
+    @Test
+    public void roundTripKeepsEveryField() {
+        TodoItem original = new TodoItem("todo-1", "Water the rice", "North plot", "user-1");
+        original.setCompleted(true);
+        original.setCreatedAt(1_718_000_000_000L);
+        original.setUpdatedAt(1_718_000_060_000L);
+        original.setDeleted(true);
+
+        TodoItem decoded = TodoItemCodec.fromMap(TodoItemCodec.toMap(original));
+
+        assertEquals("todo-1", decoded.getId());
+        assertEquals("Water the rice", decoded.getTitle());
+        assertEquals("North plot", decoded.getDescription());
+        assertTrue(decoded.isCompleted());
+        assertEquals(1_718_000_000_000L, decoded.getCreatedAt());
+        assertEquals(1_718_000_060_000L, decoded.getUpdatedAt());
+        assertTrue(decoded.isDeleted());
+        assertEquals("user-1", decoded.getUserId());
+    }
+
+    @Test
+    public void serverTimestampIsReadAsMillis() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("id", "todo-1");
+        data.put("updatedAt", new Date(1_718_000_060_000L));
+
+        assertEquals(1_718_000_060_000L, TodoItemCodec.fromMap(data).getUpdatedAt());
+    }
+
+    @Test
+    public void absentFieldsKeepDefaults() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("title", "Untitled");
+
+        TodoItem decoded = TodoItemCodec.fromMap(data);
+
+        assertEquals("", decoded.getId());
+        assertEquals("Untitled", decoded.getTitle());
+        assertNull(decoded.getDescription());
+        assertFalse(decoded.isCompleted());
+        assertEquals(0L, decoded.getCreatedAt());
+        assertEquals(0L, decoded.getUpdatedAt());
+        assertFalse(decoded.isDeleted());
+    }
+
+    @Test
+    public void wrongTypesAreIgnored() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("title", 42L);
+        data.put("completed", "yes");
+        data.put("createdAt", "yesterday");
+
+        TodoItem decoded = TodoItemCodec.fromMap(data);
+
+        assertNull(decoded.getTitle());
+        assertFalse(decoded.isCompleted());
+        assertEquals(0L, decoded.getCreatedAt());
+    }
+
+    @Test
+    public void readsClassMapperLayoutLikeToObject() {
+        TodoItem original = new TodoItem("todo-1", "Water the rice", "North plot", "user-1");
+        original.setCompleted(true);
+        original.setCreatedAt(1_718_000_000_000L);
+        original.setUpdatedAt(1_718_000_060_000L);
+        original.setDeleted(true);
+        Map<String, Object> legacy = ClassMapperLayout.write(original);
+
+        assertEquals(legacy.keySet(), TodoItemCodec.toMap(original).keySet());
+        ClassMapperLayout.assertSameProperties(ClassMapperLayout.read(legacy, TodoItem.class),
+                TodoItemCodec.fromMap(legacy));
+        ClassMapperLayout.assertSameProperties(original, TodoItemCodec.fromMap(legacy));
+    }
+
+    @Test
+    public void serverTimestampReadsLikeLegacyMillis() {
+        TodoItem original = new TodoItem("todo-1", "Water the rice", "North plot", "user-1");
+        original.setUpdatedAt(1_718_000_060_000L);
+        Map<String, Object> legacy = ClassMapperLayout.write(original);
+        Map<String, Object> stamped = new HashMap<>(legacy);
+        stamped.put("updatedAt", new Date(1_718_000_060_000L));
+
+        ClassMapperLayout.assertSameProperties(ClassMapperLayout.read(legacy, TodoItem.class),
+                TodoItemCodec.fromMap(stamped));
+    }
+
+    @Test
+    public void missingFieldsReadLikeToObject() {
+        Map<String, Object> legacy = new HashMap<>();
+        legacy.put("title", "Untitled");
+        legacy.put("userId", "user-1");
+
+        ClassMapperLayout.assertSameProperties(ClassMapperLayout.read(legacy, TodoItem.class),
+                TodoItemCodec.fromMap(legacy));
+    }
+
+    @Test
+    public void nullTextFieldsReadLikeToObject() {
+        TodoItem original = new TodoItem("todo-1", null, null, null);
+        Map<String, Object> legacy = ClassMapperLayout.write(original);
+
+        ClassMapperLayout.assertSameProperties(ClassMapperLayout.read(legacy, TodoItem.class),
+                TodoItemCodec.fromMap(legacy));
+    }
+
+    // toObject failed the whole read here; the codec keeps the defaults instead
+    @Test
+    public void nullPrimitiveFieldsKeepDefaults() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("id", "todo-1");
+        data.put("completed", null);
+        data.put("createdAt", null);
+        data.put("updatedAt", null);
+
+        TodoItem decoded = TodoItemCodec.fromMap(data);
+
+        assertFalse(decoded.isCompleted());
+        assertEquals(0L, decoded.getCreatedAt());
+        assertEquals(0L, decoded.getUpdatedAt());
+    }
+
+    @Test
+    public void missingDocumentDecodesToNull() {
+        assertNull(TodoItemCodec.fromMap(null));
+    }
+}
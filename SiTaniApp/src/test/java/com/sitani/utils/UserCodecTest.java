@@ -0,0 +1,111 @@
+package com.sitani.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.sitani.models.FarmField;
+import com.sitani.models.User;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class UserCodecTest {
+
+    @Test
+    public void roundTripKeepsEveryField() {
+        User original = new User("user-1", "Sari", "sari@example.com", "0812", "Bogor");
+        original.setCreatedAt(1_718_000_000_000L);
+        original.setFields(Arrays.asList(
+                new FarmField("Rice", -6.595, 106.816),
+                new FarmField("Corn", -6.6, 106.8)));
+
+        User decoded = UserCodec.fromMap(UserCodec.toMap(original));
+
+        assertEquals("user-1", decoded.getUserId());
+        assertEquals("Sari", decoded.getName());
+        assertEquals("sari@example.com", decoded.getEmail());
+        assertEquals("0812", decoded.getPhone());
+        assertEquals("Bogor", decoded.getAddress());
+        assertEquals(1_718_000_000_000L, decoded.getCreatedAt());
+        assertEquals(2, decoded.getFields().size());
+        FarmField rice = decoded.getFields().get(0);
+        assertEquals("Rice", rice.getName());
+        assertEquals(-6.595, rice.getLatitude(), 0d);
+        assertEquals(106.816, rice.getLongitude(), 0d);
+    }
+
+    @Test
+    public void wholeNumberCoordinatesAreRead() {
+        Map<String, Object> field = new HashMap<>();
+        field.put("name", "Plot");
+        field.put("latitude", -6L);
+        field.put("longitude", 107L);
+        Map<String, Object> data = new HashMap<>();
+        data.put("fields", Collections.singletonList(field));
+
+        List<FarmField> fields = UserCodec.fromMap(data).getFields();
+
+        assertEquals(-6d, fields.get(0).getLatitude(), 0d);
+        assertEquals(107d, fields.get(0).getLongitude(), 0d);
+    }
+
+    @Test
+    public void absentFieldsKeepDefaults() {
+        User decoded = UserCodec.fromMap(new HashMap<>());
+
+        assertNull(decoded.getName());
+        assertEquals(0L, decoded.getCreatedAt());
+        assertTrue(decoded.getFields().isEmpty());
+    }
+
+    @Test
+    public void readsClassMapperLayoutLikeToObject() {
+        User original = new User("user-1", "Sari", "sari@example.com", "0812", "Bogor");
+        original.setCreatedAt(1_718_000_000_000L);
+        original.setFields(Arrays.asList(
+                new FarmField("Rice", -6.595, 106.816),
+                new FarmField("Corn", -6.6, 106.8)));
+        Map<String, Object> legacy = ClassMapperLayout.write(original);
+
+        assertEquals(legacy, UserCodec.toMap(original));
+        ClassMapperLayout.assertSameProperties(ClassMapperLayout.read(legacy, User.class),
+                UserCodec.fromMap(legacy));
+        ClassMapperLayout.assertSameProperties(original, UserCodec.fromMap(legacy));
+    }
+
+    @Test
+    public void wholeNumberCoordinatesReadLikeToObject() {
+        Map<String, Object> field = new HashMap<>();
+        field.put("name", "Plot");
+        field.put("latitude", -6L);
+        field.put("longitude", 107L);
+        Map<String, Object> legacy = new HashMap<>();
+        legacy.put("userId", "user-1");
+        legacy.put("fields", Collections.singletonList(field));
+
+        ClassMapperLayout.assertSameProperties(ClassMapperLayout.read(legacy, User.class),
+                UserCodec.fromMap(legacy));
+    }
+
+    @Test
+    public void nullAndMissingFieldsReadLikeToObject() {
+        Map<String, Object> legacy = new HashMap<>();
+        legacy.put("userId", "user-1");
+        legacy.put("name", null);
+        legacy.put("email", "sari@example.com");
+
+        ClassMapperLayout.assertSameProperties(ClassMapperLayout.read(legacy, User.class),
+                UserCodec.fromMap(legacy));
+    }
+
+    @Test
+    public void missingDocumentDecodesToNull() {
+        assertNull(UserCodec.fromMap(null));
+    }
+}
@@ -0,0 +1,116 @@
+package com.sitani.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import com.sitani.models.WeatherResponse;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import retrofit2.Response;
+
+public class WeatherApiClientTest {
+    private static final String WEATHER_JSON = "{\"name\":\"Jakarta\",\"main\":{\"temp\":30.5,\"humidity\":70}}";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private MockWebServer server;
+    private WeatherApiService service;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        service = WeatherApiClient.createRetrofit(temporaryFolder.newFolder("http_cache"), server.url("/").toString())
+                .create(WeatherApiService.class);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void freshResponseIsServedFromCache() throws IOException {
+        server.enqueue(new MockResponse().setBody(WEATHER_JSON).setHeader("Cache-Control", "max-age=600"));
+
+        Response<WeatherResponse> first = getWeather();
+        Response<WeatherResponse> second = getWeather();
+
+        assertEquals(1, server.getRequestCount());
+        assertNotNull(first.raw().networkResponse());
+        assertNull(second.raw().networkResponse());
+        assertNotNull(second.raw().cacheResponse());
+        assertEquals("Jakarta", second.body().getName());
+    }
+
+    @Test
+    public void staleResponseIsRevalidatedWithItsETag() throws IOException, InterruptedException {
+        server.enqueue(new MockResponse().setBody(WEATHER_JSON)
+                .setHeader("Cache-Control", "no-cache")
+                .setHeader("ETag", "\"v1\""));
+        server.enqueue(new MockResponse().setResponseCode(304));
+
+        getWeather();
+        Response<WeatherResponse> revalidated = getWeather();
+
+        server.takeRequest();
+        RecordedRequest conditional = server.takeRequest();
+        assertEquals("\"v1\"", conditional.getHeader("If-None-Match"));
+        assertEquals(200, revalidated.code());
+        assertEquals(304, revalidated.raw().networkResponse().code());
+        assertEquals("Jakarta", revalidated.body().getName());
+    }
+
+    @Test
+    public void responseWithoutCacheHeadersGetsDefaultMaxAge() throws IOException {
+        server.enqueue(new MockResponse().setBody(WEATHER_JSON));
+
+        Response<WeatherResponse> first = getWeather();
+        Response<WeatherResponse> second = getWeather();
+
+        assertEquals("public, max-age=" + Constants.HTTP_DEFAULT_MAX_AGE_SECONDS,
+                first.raw().networkResponse().header("Cache-Control"));
+        assertEquals(1, server.getRequestCount());
+        assertNotNull(second.raw().cacheResponse());
+    }
+
+    @Test
+    public void serverCacheControlIsKept() throws IOException {
+        server.enqueue(new MockResponse().setBody(WEATHER_JSON).setHeader("Cache-Control", "no-store"));
+        server.enqueue(new MockResponse().setBody(WEATHER_JSON).setHeader("Cache-Control", "no-store"));
+
+        Response<WeatherResponse> first = getWeather();
+        getWeather();
+
+        assertEquals("no-store", first.headers().get("Cache-Control"));
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void errorResponseIsNotMadeCacheable() throws IOException {
+        server.enqueue(new MockResponse().setResponseCode(500));
+        server.enqueue(new MockResponse().setResponseCode(500));
+
+        Response<WeatherResponse> first = getWeather();
+        getWeather();
+
+        assertNull(first.headers().get("Cache-Control"));
+        assertEquals(2, server.getRequestCount());
+    }
+
+    private Response<WeatherResponse> getWeather() throws IOException {
+        return service.getCurrentWeather(-6.2, 106.8, "test-key", "metric").execute();
+    }
+}
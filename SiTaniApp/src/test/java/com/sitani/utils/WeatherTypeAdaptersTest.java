@@ -0,0 +1,29 @@
+package com.sitani.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.google.gson.Gson;
+import com.sitani.models.WeatherResponse;
+
+import org.junit.Test;
+
+public class WeatherTypeAdaptersTest {
+    private final Gson gson = WeatherTypeAdapters.createGson();
+
+    @Test
+    public void nullCoordinatesReadAsNull() {
+        WeatherResponse response = gson.fromJson("{\"coord\":null,\"name\":\"Jakarta\"}", WeatherResponse.class);
+
+        assertNull(response.getCoord());
+        assertEquals("Jakarta", response.getName());
+    }
+
+    @Test
+    public void nullCoordinateFieldKeepsDefault() {
+        WeatherResponse response = gson.fromJson("{\"coord\":{\"lat\":null,\"lon\":106.8}}", WeatherResponse.class);
+
+        assertEquals(0d, response.getCoord().getLat(), 0d);
+        assertEquals(106.8, response.getCoord().getLon(), 0d);
+    }
+}
@@ -0,0 +1,72 @@
+package com.sitani.benchmarks;
+
+import com.sitani.models.TodoItem;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+final class BenchmarkData {
+    static final String USER_ID = "benchmark-user";
+
+    private BenchmarkData() {
+    }
+
+    static String resource(String name) {
+        try (InputStream in = BenchmarkData.class.getClassLoader().getResourceAsStream(name)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing benchmark resource " + name);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Newest first, like the todo list; roughly a third completed and a few tombstoned
+    static List<TodoItem> todos(int count, long seed) {
+        Random random = new Random(seed);
+        long now = 1_718_000_000_000L;
+        List<TodoItem> todos = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            TodoItem item = new TodoItem("todo-" + i, "Task " + i, "Description for task " + i, USER_ID);
+            item.setCreatedAt(now - i * 60_000L);
+            item.setUpdatedAt(item.getCreatedAt());
+            item.setCompleted(random.nextInt(3) == 0);
+            item.setDeleted(random.nextInt(50) == 0);
+            todos.add(item);
+        }
+        return todos;
+    }
+
+    // The field map Firestore hands to DocumentSnapshot.toObject for each todo
+    static List<Map<String, Object>> todoDocuments(int count, long seed) {
+        List<Map<String, Object>> documents = new ArrayList<>(count);
+        for (TodoItem item : todos(count, seed)) {
+            Map<String, Object> data = new HashMap<>();
+            data.put("id", item.getId());
+            data.put("title", item.getTitle());
+            data.put("description", item.getDescription());
+            data.put("completed", item.isCompleted());
+            data.put("createdAt", item.getCreatedAt());
+            data.put("updatedAt", item.getUpdatedAt());
+            data.put("deleted", item.isDeleted());
+            data.put("userId", item.getUserId());
+            documents.add(data);
+        }
+        return documents;
+    }
+}
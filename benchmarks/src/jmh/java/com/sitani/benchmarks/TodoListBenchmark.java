@@ -0,0 +1,88 @@
+package com.sitani.benchmarks;
+
+import com.sitani.models.TodoItem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * List work done on the todo screen: counting pending tasks over the loaded list and working
+ * out what changed between two list snapshots. DiffUtil itself ships in an Android library, so
+ * the diff is the keyed pass it reduces to for this list, using the same identity and content
+ * checks as TodoAdapter's item callback.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TodoListBenchmark {
+    @Param({"10", "1000", "100000"})
+    public int size;
+
+    private List<TodoItem> oldList;
+    private List<TodoItem> newList;
+
+    @Setup
+    public void setUp() {
+        oldList = BenchmarkData.todos(size, 42);
+
+        // One new todo on top, every tenth toggled, and the oldest removed
+        newList = new ArrayList<>(size + 1);
+        newList.add(new TodoItem("todo-new", "New task", "", BenchmarkData.USER_ID));
+        for (int i = 0; i < oldList.size() - 1; i++) {
+            TodoItem item = new TodoItem(oldList.get(i));
+            if (i % 10 == 0) {
+                item.setCompleted(!item.isCompleted());
+                item.setUpdatedAt(item.getUpdatedAt() + 1);
+            }
+            newList.add(item);
+        }
+    }
+
+    @Benchmark
+    public int pendingCount() {
+        int pending = 0;
+        for (TodoItem item : oldList) {
+            if (!item.isDeleted() && !item.isCompleted()) {
+                pending++;
+            }
+        }
+        return pending;
+    }
+
+    @Benchmark
+    public int keyedDiff() {
+        Map<String, TodoItem> previous = new HashMap<>(oldList.size() * 2);
+        for (TodoItem item : oldList) {
+            previous.put(item.getId(), item);
+        }
+
+        int changes = 0;
+        for (TodoItem item : newList) {
+            TodoItem old = previous.remove(item.getId());
+            if (old == null || !sameContents(old, item)) {
+                changes++;
+            }
+        }
+        return changes + previous.size();
+    }
+
+    private static boolean sameContents(TodoItem oldItem, TodoItem newItem) {
+        return oldItem.isCompleted() == newItem.isCompleted()
+                && oldItem.getUpdatedAt() == newItem.getUpdatedAt()
+                && Objects.equals(oldItem.getTitle(), newItem.getTitle())
+                && Objects.equals(oldItem.getDescription(), newItem.getDescription());
+    }
+}
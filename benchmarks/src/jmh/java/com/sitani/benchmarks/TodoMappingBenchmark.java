@@ -0,0 +1,73 @@
+package com.sitani.benchmarks;
+
+import com.sitani.models.TodoItem;
+import com.sitani.utils.TodoItemCodec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion of Firestore field maps into TodoItems, before and after TodoItemCodec. Firestore's
+ * toObject is Android-only, so it is modelled here by the same approach it takes: find each
+ * property's setter by reflection and invoke it with the document value.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TodoMappingBenchmark {
+    @Param({"10", "1000", "100000"})
+    public int size;
+
+    private List<Map<String, Object>> documents;
+    private Map<String, Method> setters;
+
+    @Setup
+    public void setUp() {
+        documents = BenchmarkData.todoDocuments(size, 42);
+        setters = new HashMap<>();
+        for (Method method : TodoItem.class.getMethods()) {
+            String name = method.getName();
+            if (name.startsWith("set") && name.length() > 3 && method.getParameterCount() == 1) {
+                setters.put(Character.toLowerCase(name.charAt(3)) + name.substring(4), method);
+            }
+        }
+    }
+
+    @Benchmark
+    public List<TodoItem> reflectiveSetters() throws ReflectiveOperationException {
+        List<TodoItem> todos = new ArrayList<>(documents.size());
+        for (Map<String, Object> data : documents) {
+            TodoItem item = TodoItem.class.getDeclaredConstructor().newInstance();
+            for (Map.Entry<String, Object> field : data.entrySet()) {
+                Method setter = setters.get(field.getKey());
+                if (setter != null) {
+                    setter.invoke(item, field.getValue());
+                }
+            }
+            todos.add(item);
+        }
+        return todos;
+    }
+
+    @Benchmark
+    public List<TodoItem> codec() {
+        List<TodoItem> todos = new ArrayList<>(documents.size());
+        for (Map<String, Object> data : documents) {
+            todos.add(TodoItemCodec.fromMap(data));
+        }
+        return todos;
+    }
+}
@@ -0,0 +1,87 @@
+package com.sitani.benchmarks;
+
+import com.sitani.data.TodoSearchIndex;
+import com.sitani.models.TodoItem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queries against the on-device todo search index, plus the incremental update done when a
+ * single todo is edited. Titles and descriptions are drawn from a small farming vocabulary so
+ * that common prefixes match many tokens and many todos, as they would on a real account.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TodoSearchBenchmark {
+    private static final String[] WORDS = {
+            "siram", "sawah", "padi", "pupuk", "urea", "panen", "jagung", "cabai", "tomat", "bibit",
+            "semprot", "hama", "wereng", "traktor", "irigasi", "pompa", "gudang", "pasar", "jual", "beli",
+            "tanam", "cangkul", "kompos", "kandang", "ayam", "sapi", "pakan", "rumput", "benih", "kebun"
+    };
+
+    @Param({"1000", "50000"})
+    public int size;
+
+    private TodoSearchIndex index;
+    private TodoItem edited;
+    private int editCount;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        List<TodoItem> todos = BenchmarkData.todos(size, 42);
+        index = new TodoSearchIndex(BenchmarkData.USER_ID);
+        for (TodoItem item : todos) {
+            item.setTitle(phrase(random, 3));
+            item.setDescription(phrase(random, 8));
+            index.put(item);
+        }
+        edited = new TodoItem(todos.get(todos.size() / 2));
+        edited.setDeleted(false);
+    }
+
+    private static String phrase(Random random, int words) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                builder.append(' ');
+            }
+            builder.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return builder.toString();
+    }
+
+    @Benchmark
+    public List<String> singlePrefix() {
+        return index.search("pu");
+    }
+
+    @Benchmark
+    public List<String> multiTerm() {
+        return index.search("siram padi pupuk");
+    }
+
+    @Benchmark
+    public List<String> multiTermPrefix() {
+        return index.search("Jag sem tra");
+    }
+
+    @Benchmark
+    public int editTodo() {
+        edited.setTitle((editCount++ % 2 == 0) ? "panen jagung besok" : "semprot hama wereng");
+        index.put(edited);
+        return index.size();
+    }
+}
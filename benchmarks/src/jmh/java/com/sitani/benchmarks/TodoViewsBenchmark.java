@@ -0,0 +1,69 @@
+package com.sitani.benchmarks;
+
+import com.sitani.data.TodoViews;
+import com.sitani.models.TodoItem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filter and sort switching on the todo screen. rebuildView is what every switch would cost
+ * without maintained views: filter and sort the whole set. switchView reads a view that is
+ * already built, and toggleTodo is the upkeep of one status change with every view built.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TodoViewsBenchmark {
+    @Param({"1000", "50000"})
+    public int size;
+
+    private List<TodoItem> todos;
+    private long dayStart;
+    private TodoViews views;
+    private TodoItem toggled;
+
+    @Setup
+    public void setUp() {
+        todos = BenchmarkData.todos(size, 42);
+        // About the newest tenth of the todos falls on "today"
+        dayStart = todos.get(todos.size() / 10).getCreatedAt();
+        views = new TodoViews(BenchmarkData.USER_ID, todos, dayStart);
+        for (TodoViews.Filter filter : TodoViews.Filter.values()) {
+            for (TodoViews.Sort sort : TodoViews.Sort.values()) {
+                views.get(filter, sort);
+            }
+        }
+        toggled = new TodoItem(todos.get(todos.size() / 2));
+        toggled.setDeleted(false);
+    }
+
+    @Benchmark
+    public List<TodoItem> rebuildView() {
+        return new TodoViews(BenchmarkData.USER_ID, todos, dayStart).get(TodoViews.Filter.PENDING, TodoViews.Sort.TITLE);
+    }
+
+    @Benchmark
+    public List<TodoItem> switchView() {
+        return views.get(TodoViews.Filter.PENDING, TodoViews.Sort.TITLE);
+    }
+
+    @Benchmark
+    public TodoViews toggleTodo() {
+        TodoItem next = new TodoItem(toggled);
+        next.setCompleted(!toggled.isCompleted());
+        next.setUpdatedAt(toggled.getUpdatedAt() + 1);
+        views.put(next);
+        toggled = next;
+        return views;
+    }
+}
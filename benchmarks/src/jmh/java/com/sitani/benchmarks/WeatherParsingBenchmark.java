@@ -0,0 +1,58 @@
+package com.sitani.benchmarks;
+
+import com.google.gson.Gson;
+import com.sitani.models.ForecastResponse;
+import com.sitani.models.WeatherResponse;
+import com.sitani.utils.WeatherTypeAdapters;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reflective Gson binding against the streaming adapters in WeatherTypeAdapters, on sample
+ * OpenWeather current-weather and 5-day forecast payloads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class WeatherParsingBenchmark {
+    private Gson reflectiveGson;
+    private Gson streamingGson;
+    private String currentJson;
+    private String forecastJson;
+
+    @Setup
+    public void setUp() {
+        reflectiveGson = new Gson();
+        streamingGson = WeatherTypeAdapters.createGson();
+        currentJson = BenchmarkData.resource("weather_current.json");
+        forecastJson = BenchmarkData.resource("forecast_5day.json");
+    }
+
+    @Benchmark
+    public WeatherResponse currentReflective() {
+        return reflectiveGson.fromJson(currentJson, WeatherResponse.class);
+    }
+
+    @Benchmark
+    public WeatherResponse currentStreaming() {
+        return streamingGson.fromJson(currentJson, WeatherResponse.class);
+    }
+
+    @Benchmark
+    public ForecastResponse forecastReflective() {
+        return reflectiveGson.fromJson(forecastJson, ForecastResponse.class);
+    }
+
+    @Benchmark
+    public ForecastResponse forecastStreaming() {
+        return streamingGson.fromJson(forecastJson, ForecastResponse.class);
+    }
+}
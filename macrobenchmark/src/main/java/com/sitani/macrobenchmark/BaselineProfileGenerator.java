@@ -0,0 +1,38 @@
+package com.sitani.macrobenchmark;
+
+import androidx.benchmark.macro.junit4.BaselineProfileRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import kotlin.Unit;
+
+/**
+ * Records the classes and methods used on the startup path into the app's Baseline Profile.
+ * Run with: ./gradlew :SiTaniApp:generateBaselineProfile
+ */
+@RunWith(AndroidJUnit4.class)
+public class BaselineProfileGenerator {
+
+    @Rule
+    public BaselineProfileRule baselineProfileRule = new BaselineProfileRule();
+
+    @Test
+    public void startup() {
+        baselineProfileRule.collect(
+                StartupJourney.PACKAGE_NAME,
+                15,
+                3,
+                null,
+                true,
+                false,
+                name -> true,
+                scope -> {
+                    scope.pressHome();
+                    StartupJourney.launchToHome(scope);
+                    return Unit.INSTANCE;
+                });
+    }
+}
@@ -0,0 +1,61 @@
+package com.sitani.macrobenchmark;
+
+import androidx.benchmark.macro.BaselineProfileMode;
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.StartupTimingMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+
+import kotlin.Unit;
+
+/**
+ * Startup from the launcher to a populated MainActivity. StartupTimingMetric reports time to
+ * initial display, and time to full display once MainActivity calls reportFullyDrawn.
+ * Run with: ./gradlew :macrobenchmark:connectedBenchmarkReleaseAndroidTest
+ */
+@RunWith(AndroidJUnit4.class)
+public class StartupBenchmark {
+    private static final int ITERATIONS = 10;
+
+    @Rule
+    public MacrobenchmarkRule benchmarkRule = new MacrobenchmarkRule();
+
+    @Test
+    public void coldStartupNoCompilation() {
+        startup(new CompilationMode.None(), StartupMode.COLD);
+    }
+
+    @Test
+    public void coldStartupBaselineProfile() {
+        startup(new CompilationMode.Partial(BaselineProfileMode.Require), StartupMode.COLD);
+    }
+
+    @Test
+    public void warmStartupBaselineProfile() {
+        startup(new CompilationMode.Partial(BaselineProfileMode.Require), StartupMode.WARM);
+    }
+
+    private void startup(CompilationMode compilationMode, StartupMode startupMode) {
+        benchmarkRule.measureRepeated(
+                StartupJourney.PACKAGE_NAME,
+                Collections.singletonList(new StartupTimingMetric()),
+                compilationMode,
+                startupMode,
+                ITERATIONS,
+                scope -> {
+                    scope.pressHome();
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    StartupJourney.launchToHome(scope);
+                    return Unit.INSTANCE;
+                });
+    }
+}
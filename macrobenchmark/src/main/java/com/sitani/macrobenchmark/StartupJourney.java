@@ -0,0 +1,23 @@
+package com.sitani.macrobenchmark;
+
+import androidx.benchmark.macro.MacrobenchmarkScope;
+import androidx.test.uiautomator.By;
+import androidx.test.uiautomator.Until;
+
+/**
+ * Launch path shared by the benchmarks and the profile generator: the launcher opens
+ * SplashActivity, which routes a signed-in user to MainActivity. The device must already be
+ * signed in, otherwise the journey stops at the login form.
+ */
+final class StartupJourney {
+    static final String PACKAGE_NAME = "com.sitani";
+    private static final long CONTENT_TIMEOUT_MS = 10_000;
+
+    private StartupJourney() {
+    }
+
+    static void launchToHome(MacrobenchmarkScope scope) {
+        scope.startActivityAndWait();
+        scope.getDevice().wait(Until.hasObject(By.res(PACKAGE_NAME, "weatherCard")), CONTENT_TIMEOUT_MS);
+    }
+}